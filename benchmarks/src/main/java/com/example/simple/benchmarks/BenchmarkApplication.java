@@ -0,0 +1,92 @@
+package com.example.simple.benchmarks;
+
+import com.example.simple.SimpleRestApiApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts the real application for a benchmark trial and fills its database.
+ * Every trial gets its own in-memory H2 database, SQL logging is off so it is not measured.
+ * The servlet stack always starts, on a random port, because the security configuration needs it.
+ */
+final class BenchmarkApplication {
+
+    static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+
+    /** Seeded birth dates cycle through this many days, about 50 years. */
+    static final int BIRTH_DATE_DAYS = 18_250;
+
+    private static final int SEED_BATCH = 10_000;
+
+    /** Seeded ids start far above the ones the application draws from its sequence. */
+    private static final long FIRST_SEEDED_ID = 10_000_000_000L;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param args further {@code --name=value} properties, they override the defaults set here
+     */
+    static ConfigurableApplicationContext start(String... args) {
+        // passed as arguments, default properties would lose against application.yml
+        List<String> defaults = List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--server.port=0",
+                "--user.rate-limit.enabled=false",
+                "--user.admission.maxConcurrent=1024",
+                // in memory, trials must not share or lock the on-disk index
+                "--user.textIndex.path=",
+                "--logging.level.root=WARN");
+        // a repeated argument would be read as both values joined by a comma, so a default given again is dropped
+        List<String> all = new ArrayList<>(List.of(args));
+        defaults.stream()
+                .filter(arg -> all.stream().noneMatch(given -> given.startsWith(arg.substring(0, arg.indexOf('=') + 1))))
+                .forEach(all::add);
+        return new SpringApplicationBuilder(SimpleRestApiApplication.class)
+                .logStartupInfo(false)
+                .run(all.toArray(String[]::new));
+    }
+
+    /**
+     * Inserts users {@code user0@bench.example} .. {@code user<rows-1>@bench.example} with plain JDBC batches,
+     * user {@code i} gets the id {@link #id(int)}.
+     */
+    static void seed(ConfigurableApplicationContext context, int rows) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{
+                    id(i), 0L, email(i), "{noop}password", "BASIC", true,
+                    "First" + i, "Last" + i, Date.valueOf(birthDate(i)), "Street " + i, "+1000000" + i});
+            if (batch.size() == SEED_BATCH || i == rows - 1) {
+                jdbc.batchUpdate("""
+                        insert into users (id, version, email, password, role, enabled,
+                                           first_name, last_name, birth_date, address, phone_number)
+                        values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        """, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    static long id(int i) {
+        return FIRST_SEEDED_ID + i;
+    }
+
+    static String email(int i) {
+        return "user" + i + "@bench.example";
+    }
+
+    static LocalDate birthDate(int i) {
+        return FIRST_BIRTH_DATE.plusDays(i % BIRTH_DATE_DAYS);
+    }
+}
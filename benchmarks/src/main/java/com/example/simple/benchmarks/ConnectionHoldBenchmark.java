@@ -0,0 +1,78 @@
+package com.example.simple.benchmarks;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Range reads of a few hundred users from more threads than the pool has connections.
+ * With open-in-view the connection stays checked out while the response is rendered,
+ * without it only for the read-only transaction of the query, so the same pool serves more requests.
+ * Besides the throughput, the trial prints the mean Hikari usage (hold) and acquire (wait) times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ConnectionHoldBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final int POOL_SIZE = 2;
+
+    @Param({"true", "false"})
+    public boolean openInView;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mvc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "--spring.jpa.open-in-view=" + openInView,
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.datasource.hikari.minimum-idle=" + POOL_SIZE);
+        BenchmarkApplication.seed(context, ROWS);
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+        Timer usage = registry.get("hikaricp.connections.usage").timer();
+        Timer acquire = registry.get("hikaricp.connections.acquire").timer();
+        System.out.printf(Locale.ROOT, "%nopenInView=%s connection hold %.3f ms, wait %.3f ms (mean of %d)%n",
+                openInView, usage.mean(TimeUnit.MILLISECONDS), acquire.mean(TimeUnit.MILLISECONDS), usage.count());
+        context.close();
+    }
+
+    /** About 400 rows, two years of birth dates. */
+    @Benchmark
+    public int getRange() throws Exception {
+        MvcResult result = mvc.perform(get("/users")
+                .queryParam("from", "1970-01-01")
+                .queryParam("to", "1971-12-31")).andReturn();
+        int status = result.getResponse().getStatus();
+        if (status >= 400) {
+            throw new IllegalStateException("/users answered " + status);
+        }
+        return status;
+    }
+}
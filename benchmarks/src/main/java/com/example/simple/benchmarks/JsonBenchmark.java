@@ -0,0 +1,92 @@
+package com.example.simple.benchmarks;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import com.example.simple.util.SimpleDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the request and response bodies, with the same ObjectMapper setup Spring MVC uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper mapper;
+
+    private User user;
+
+    private byte[] userJson;
+
+    private SimpleDTO errors;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+
+        user = new User();
+        user.setEmail("john.doe@example.com");
+        user.setPassword("secret");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setBirthDate(LocalDate.of(1990, 5, 17));
+        user.setAddress("1 Main Street");
+        user.setPhoneNumber("+10000000000");
+        userJson = mapper.writeValueAsBytes(user);
+
+        errors = SimpleDTO.of(Map.of(
+                "email", "must be a well-formed email address",
+                "firstName", "must not be blank"));
+    }
+
+    @Benchmark
+    public User readUser() throws Exception {
+        return mapper.readValue(userJson, User.class);
+    }
+
+    @Benchmark
+    public byte[] writeUser() throws Exception {
+        return mapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] writeUserViewPage(Page page) throws Exception {
+        return mapper.writeValueAsBytes(page.body);
+    }
+
+    @Benchmark
+    public byte[] writeFieldErrors() throws Exception {
+        return mapper.writeValueAsBytes(errors);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Page {
+
+        @Param({"1", "100", "1000"})
+        int size;
+
+        SimpleDTO body;
+
+        @Setup
+        public void setUp() {
+            List<UserView> views = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                views.add(new UserView((long) i, 0L, BenchmarkApplication.email(i), "First" + i, "Last" + i,
+                        BenchmarkApplication.birthDate(i), "Street " + i, "+1000000" + i));
+            }
+            body = SimpleDTO.of(views);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.simple.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop HTTP load against a running instance, for what JMH cannot show: tail latency under
+ * concurrency, e.g. authenticated requests with and without the credential cache, or the platform
+ * thread pool against virtual threads. Prints one JSON object per run.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.simple.benchmarks.LoadDriver \
+ *      http://localhost:8080/users/1 200 30 admin@example.com:admin
+ * </pre>
+ * Arguments: url, concurrent clients, seconds, optional {@code user:password} for HTTP Basic.
+ */
+public final class LoadDriver {
+
+    private static final int MAX_SAMPLES = 10_000_000;
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: LoadDriver <url> <clients> <seconds> [user:password]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0]);
+        int clients = Integer.parseInt(args[1]);
+        long seconds = Long.parseLong(args[2]);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET();
+        if (args.length > 3) {
+            builder.header("Authorization", "Basic " +
+                    Base64.getEncoder().encodeToString(args[3].getBytes(StandardCharsets.UTF_8)));
+        }
+        HttpRequest request = builder.build();
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+
+        AtomicLongArray latencies = new AtomicLongArray(MAX_SAMPLES);
+        AtomicInteger samples = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        long started = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                    int sample = samples.getAndIncrement();
+                    if (sample < MAX_SAMPLES) {
+                        latencies.set(sample, System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+
+        int count = Math.min(samples.get(), MAX_SAMPLES);
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+
+        System.out.printf(Locale.ROOT,
+                "{\"url\":\"%s\",\"clients\":%d,\"requests\":%d,\"failures\":%d,\"throughput\":%.1f,"
+                        + "\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}%n",
+                uri, clients, count, failures.get(), count / elapsed,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        System.exit(0);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.simple.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Full round trips through the security filter chain, the controller, JPA and H2, without sockets.
+ * Requests authenticate with HTTP Basic like real clients, so credential caching is part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MockMvcBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final RequestPostProcessor ADMIN = httpBasic("admin@example.com", "admin");
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mvc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, ROWS);
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getById() throws Exception {
+        return status(mvc.perform(get("/users/{id}", randomId())).andReturn());
+    }
+
+    @Benchmark
+    public int getRange() throws Exception {
+        return status(mvc.perform(get("/users")
+                .queryParam("from", "1970-01-01")
+                .queryParam("to", "1970-03-01")).andReturn());
+    }
+
+    @Benchmark
+    public int getPage() throws Exception {
+        return status(mvc.perform(get("/users")
+                .queryParam("from", "1950-01-01")
+                .queryParam("to", "2000-01-01")
+                .queryParam("limit", "100")).andReturn());
+    }
+
+    @Benchmark
+    public int getStream() throws Exception {
+        MvcResult started = mvc.perform(get("/users")
+                .queryParam("from", "1970-01-01")
+                .queryParam("to", "1971-01-01")
+                .queryParam("stream", "true")).andReturn();
+        return status(mvc.perform(asyncDispatch(started)).andReturn());
+    }
+
+    @Benchmark
+    public int postUser() throws Exception {
+        return status(mvc.perform(post("/users").with(ADMIN)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(newUserJson())).andReturn());
+    }
+
+    @Benchmark
+    public int postBulkImport() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append(newUserJson()).append('\n');
+        }
+        return status(mvc.perform(post("/users/bulk").with(ADMIN)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(body.toString())).andReturn());
+    }
+
+    @Benchmark
+    public int patchUser() throws Exception {
+        return status(mvc.perform(patch("/users/{id}", randomId()).with(ADMIN)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"address\":\"Street " + sequence.incrementAndGet() + "\"}")).andReturn());
+    }
+
+    /** Deletes a user created by the same invocation, so the table keeps its size. */
+    @Benchmark
+    public int postThenDelete() throws Exception {
+        MvcResult created = mvc.perform(post("/users").with(ADMIN)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(newUserJson())).andReturn();
+        String location = created.getResponse().getHeader("Location");
+        String id = location.substring(location.lastIndexOf('/') + 1);
+        return status(mvc.perform(delete("/users/{id}", id).with(ADMIN)).andReturn());
+    }
+
+    @Benchmark
+    public int bulkDeleteMissing() throws Exception {
+        return status(mvc.perform(delete("/users").with(ADMIN)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"emails\":[\"missing" + sequence.incrementAndGet() + "@bench.example\"]}")).andReturn());
+    }
+
+    private String newUserJson() {
+        return """
+                {"email":"new%d@bench.example","password":"password","firstName":"First","lastName":"Last",\
+                "birthDate":"1990-01-01"}""".formatted(sequence.incrementAndGet());
+    }
+
+    private static long randomId() {
+        return BenchmarkApplication.id(ThreadLocalRandom.current().nextInt(ROWS));
+    }
+
+    private static int status(MvcResult result) {
+        int status = result.getResponse().getStatus();
+        if (status >= 400) {
+            throw new IllegalStateException(result.getRequest().getRequestURI() + " answered " + status);
+        }
+        return status;
+    }
+}
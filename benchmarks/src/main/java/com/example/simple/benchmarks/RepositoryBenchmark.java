@@ -0,0 +1,91 @@
+package com.example.simple.benchmarks;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import com.example.simple.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository queries of the user API against the application's H2 database.
+ * {@code entityRange} loads the same rows as {@code projectionRange} as managed entities,
+ * run with {@code -prof gc} to see what the {@code UserView} projection saves per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryBenchmark {
+
+    @Param({"10000", "1000000"})
+    int rows;
+
+    /** Width of the birth date window of the range queries. */
+    @Param({"30"})
+    int rangeDays;
+
+    private ConfigurableApplicationContext context;
+
+    private UserRepository repo;
+
+    private jakarta.persistence.EntityManager em;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, rows);
+        repo = context.getBean(UserRepository.class);
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean existsByEmailHit() {
+        return repo.existsByEmail(BenchmarkApplication.email(ThreadLocalRandom.current().nextInt(rows)));
+    }
+
+    @Benchmark
+    public boolean existsByEmailMiss() {
+        return repo.existsByEmail("missing" + ThreadLocalRandom.current().nextInt(rows) + "@bench.example");
+    }
+
+    @Benchmark
+    public List<UserView> projectionRange() {
+        LocalDate from = randomFrom();
+        return repo.findByBirthDateBetween(from, from.plusDays(rangeDays));
+    }
+
+    @Benchmark
+    public List<User> entityRange() {
+        LocalDate from = randomFrom();
+        return em.createQuery("select u from User u where u.birthDate between :from and :to", User.class)
+                .setParameter("from", from)
+                .setParameter("to", from.plusDays(rangeDays))
+                .getResultList();
+    }
+
+    @Benchmark
+    public List<UserView> keysetPage() {
+        LocalDate from = randomFrom();
+        return repo.findByBirthDateBetweenOrderByBirthDateAscIdAsc(from, from.plusDays(rangeDays), PageRequest.ofSize(100));
+    }
+
+    private LocalDate randomFrom() {
+        return BenchmarkApplication.FIRST_BIRTH_DATE.plusDays(
+                ThreadLocalRandom.current().nextInt(BenchmarkApplication.BIRTH_DATE_DAYS - rangeDays));
+    }
+}
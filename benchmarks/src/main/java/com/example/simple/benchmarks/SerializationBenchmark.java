@@ -0,0 +1,118 @@
+package com.example.simple.benchmarks;
+
+import com.example.simple.model.UserView;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU cost of the formats a range query can be served in, against the bytes they put on the wire.
+ * {@code write} is the server side, {@code read} what a bulk consumer pays to decode the response.
+ * The mappers are configured like the application's (ISO dates), gzip runs at the level Tomcat uses.
+ * Wire sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SerializationBenchmark {
+
+    private static final TypeReference<List<UserView>> USER_VIEWS = new TypeReference<>() {
+    };
+
+    @Param({"1000", "100000"})
+    int rows;
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    @Param({"false", "true"})
+    boolean gzip;
+
+    private ObjectMapper mapper;
+
+    private List<UserView> body;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonFactory factory = switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        mapper = Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        body = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            body.add(new UserView(BenchmarkApplication.id(i), 0L, BenchmarkApplication.email(i), "First" + i, "Last" + i,
+                    BenchmarkApplication.birthDate(i), i + " Main Street, Springfield", "+1555" + (1_000_000 + i)));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = wire(bytes)) {
+            mapper.writeValue(out, body);
+        }
+        encoded = bytes.toByteArray();
+        System.out.printf("%n%s%s, %d rows: %d bytes, %.1f per row%n",
+                format, gzip ? " + gzip" : "", rows, encoded.length, (double) encoded.length / rows);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        CountingOutputStream counting = new CountingOutputStream();
+        // writeValue closes the stream, which finishes the gzip trailer
+        mapper.writeValue(wire(counting), body);
+        return counting.count;
+    }
+
+    @Benchmark
+    public List<UserView> read() throws IOException {
+        InputStream in = new ByteArrayInputStream(encoded);
+        return mapper.readValue(gzip ? new GZIPInputStream(in) : in, USER_VIEWS);
+    }
+
+    private OutputStream wire(OutputStream out) throws IOException {
+        return gzip ? new GZIPOutputStream(out, 8192) : out;
+    }
+
+    /**
+     * Discards what is written, as the socket would.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.simple.benchmarks;
+
+import com.example.simple.model.UserView;
+import com.example.simple.services.UserTextIndex;
+import com.example.simple.services.UserTextIndexer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.DataClassRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Free-text lookups of {@code GET /users/search?q=} on the on-disk Lucene index, against the
+ * {@code LIKE '%x%'} query over the users table they replace. Sampled, so the report has percentiles:
+ * the p0.99 row of each benchmark is the figure to watch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TextSearchBenchmark {
+
+    @Param({"100000"})
+    int rows;
+
+    private Path indexPath;
+
+    private ConfigurableApplicationContext context;
+
+    private UserTextIndex index;
+
+    private JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        indexPath = Files.createTempDirectory("user-index");
+        context = BenchmarkApplication.start("--user.textIndex.path=" + indexPath);
+        BenchmarkApplication.seed(context, rows);
+        index = context.getBean(UserTextIndex.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+
+        context.getBean(UserTextIndexer.class).rebuild();
+        while (index.size() < rows) {
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(indexPath);
+    }
+
+    @Benchmark
+    public List<UserView> fullName() {
+        int i = randomRow();
+        return index.search("First" + i + " Last" + i, 20);
+    }
+
+    @Benchmark
+    public List<UserView> nameWithTypo() {
+        return index.search("Lsat" + randomRow(), 20);
+    }
+
+    @Benchmark
+    public List<UserView> phoneDigits() {
+        return index.search("000" + randomRow(), 20);
+    }
+
+    @Benchmark
+    public List<UserView> likeScan() {
+        String pattern = "%last" + randomRow() + "%";
+        return jdbc.query("""
+                select id, version, email, first_name, last_name, birth_date, address, phone_number
+                from users
+                where lower(first_name) like ? or lower(last_name) like ? or email_lower like ?
+                   or lower(address) like ? or phone_number like ?
+                limit 20
+                """, new DataClassRowMapper<>(UserView.class), pattern, pattern, pattern, pattern, pattern);
+    }
+
+    private int randomRow() {
+        return ThreadLocalRandom.current().nextInt(rows);
+    }
+}
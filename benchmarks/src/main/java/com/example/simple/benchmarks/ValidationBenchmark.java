@@ -0,0 +1,140 @@
+package com.example.simple.benchmarks;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import com.example.simple.validation.MinimumAgePolicy;
+import com.example.simple.validation.UserValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserValidator} against the Hibernate Validator path it replaced.
+ * The baseline validates {@link AnnotatedUser}, a copy of the constraints {@code User} used to carry,
+ * and collects violations into a map the way the controller advice did.
+ * Run with {@code -prof gc} to compare allocations per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private final MinimumAgePolicy agePolicy = new MinimumAgePolicy(Clock.systemDefaultZone(), 18);
+
+    private final UserValidator userValidator = new UserValidator(agePolicy);
+
+    private ValidatorFactory factory;
+
+    private Validator beanValidator;
+
+    private User valid;
+
+    private User invalid;
+
+    private AnnotatedUser annotatedValid;
+
+    private AnnotatedUser annotatedInvalid;
+
+    @Setup
+    public void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        beanValidator = factory.getValidator();
+
+        valid = new User();
+        valid.setEmail("john.doe@example.com");
+        valid.setPassword("secret");
+        valid.setFirstName("John");
+        valid.setLastName("Doe");
+        valid.setBirthDate(LocalDate.of(1990, 5, 17));
+
+        invalid = new User();
+        invalid.setEmail("john.doe@");
+        invalid.setFirstName(" ");
+
+        annotatedValid = AnnotatedUser.of(valid);
+        annotatedInvalid = AnnotatedUser.of(invalid);
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Benchmark
+    public Map<String, String> userValidatorValid() {
+        return userValidator.newUserViolations(valid);
+    }
+
+    @Benchmark
+    public Map<String, String> userValidatorInvalid() {
+        return userValidator.newUserViolations(invalid);
+    }
+
+    @Benchmark
+    public Map<String, String> beanValidationValid() {
+        return annotationPath(annotatedValid);
+    }
+
+    @Benchmark
+    public Map<String, String> beanValidationInvalid() {
+        return annotationPath(annotatedInvalid);
+    }
+
+    private Map<String, String> annotationPath(AnnotatedUser user) {
+        Set<ConstraintViolation<AnnotatedUser>> violations = beanValidator.validate(user);
+        if (!violations.isEmpty()) {
+            Map<String, String> errors = new HashMap<>();
+            violations.forEach(v -> errors.put(v.getPropertyPath().toString(), v.getMessage()));
+            return errors;
+        }
+        try {
+            agePolicy.check(user.birthDate);
+        } catch (FieldException ex) {
+            return Map.of("row", ex.getMessage());
+        }
+        return Map.of();
+    }
+
+    static class AnnotatedUser {
+
+        @Email(regexp = "^[a-zA-Z0-9_!#$%&’*+/=?`{|}~^.-]+@[a-zA-Z0-9.-]+$")
+        String email;
+
+        @NotBlank
+        String password;
+
+        @NotBlank
+        String firstName;
+
+        @NotBlank
+        String lastName;
+
+        @NotNull
+        LocalDate birthDate;
+
+        static AnnotatedUser of(User user) {
+            AnnotatedUser copy = new AnnotatedUser();
+            copy.email = user.getEmail();
+            copy.password = user.getPassword();
+            copy.firstName = user.getFirstName();
+            copy.lastName = user.getLastName();
+            copy.birthDate = user.getBirthDate();
+            return copy;
+        }
+    }
+}
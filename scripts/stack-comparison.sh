@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Servlet against reactive stack under the same closed-loop load, one JSON object per stack and endpoint.
+#
+#   mvn -B install -DskipTests && mvn -B -f benchmarks/pom.xml package
+#
+# Both stacks start on a fresh in-memory database seeded with the same users through the API.
+# Usage: scripts/stack-comparison.sh [clients] [seconds] [port]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+CLIENTS=${1:-1000}
+SECONDS_PER_RUN=${2:-30}
+PORT=${3:-8080}
+BASE=http://localhost:$PORT
+ADMIN=admin@example.com:admin
+EXEC_JAR=target/simple-rest-api-0.0.1-SNAPSHOT-exec.jar
+DRIVER="java -cp benchmarks/target/benchmarks.jar com.example.simple.benchmarks.LoadDriver"
+SEED_USERS=365
+
+# compare <stack> <app args...>
+compare() {
+  local stack=$1; shift
+  local log
+  log=$(mktemp)
+  # the load is the point here: per-client rate limits and admission control stay out of the way
+  java -jar "$EXEC_JAR" --server.port="$PORT" --spring.jpa.show-sql=false \
+    --user.rate-limit.enabled=false --user.admission.maxConcurrent=$((CLIENTS * 2)) --user.admin.password="${ADMIN#*:}" "$@" >"$log" 2>&1 &
+  local pid=$!
+  until curl -fs -o /dev/null "$BASE/actuator/health"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "{\"stack\":\"$stack\",\"error\":\"exited, see $log\"}"
+      return
+    fi
+    sleep 0.2
+  done
+
+  # one user per day of 1980, a year range returns all of them
+  for i in $(seq 0 $((SEED_USERS - 1))); do
+    curl -fs -o /dev/null -u "$ADMIN" -H 'Content-Type: application/json' "$BASE/users" -d \
+      "{\"email\":\"load$i@example.com\",\"password\":\"password\",\"firstName\":\"First\",\"lastName\":\"Last\",
+        \"birthDate\":\"$(date -d "1980-01-01 + $i days" +%F)\"}"
+  done
+
+  for url in "$BASE/users/1" "$BASE/users?from=1980-01-01&to=1980-12-31"; do
+    echo "{\"stack\":\"$stack\",\"result\":$($DRIVER "$url" "$CLIENTS" "$SECONDS_PER_RUN")}"
+  done
+
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  rm -f "$log"
+}
+
+compare servlet
+compare reactive --spring.profiles.active=reactive
@@ -0,0 +1,64 @@
+#!/usr/bin/env bash
+# Startup time and resident memory of each build variant, one JSON object per line.
+#
+#   mvn -B clean package -DskipTests                  # jvm, jvm-lazy
+#   mvn -B -Pcds clean package -DskipTests            # cds (trains target/app.jsa on first use)
+#   mvn -B -Pnative clean native:compile -DskipTests  # native, needs GraalVM
+#
+# Variants whose artifacts are missing are skipped. Usage: scripts/startup-report.sh [port]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+PORT=${1:-8080}
+TARGET=target
+VERSION=0.0.1-SNAPSHOT
+
+# measure <variant> <working dir> <command...>
+measure() {
+  local variant=$1 dir=$2; shift 2
+  local log
+  log=$(mktemp)
+  local start
+  start=$(date +%s%N)
+  (cd "$dir" && exec "$@" --server.port="$PORT") >"$log" 2>&1 &
+  local pid=$!
+  until curl -fs -o /dev/null "http://localhost:$PORT/actuator/health"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "{\"variant\":\"$variant\",\"error\":\"exited, see $log\"}"
+      return
+    fi
+    sleep 0.05
+  done
+  local ready=$(( ($(date +%s%N) - start) / 1000000 ))
+  local rss
+  rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+  local started
+  started=$(grep -o 'Started [A-Za-z]* in [0-9.]* seconds' "$log" | awk '{print $4}')
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  rm -f "$log"
+  echo "{\"variant\":\"$variant\",\"readyMs\":$ready,\"startedSeconds\":${started:-null},\"rssKb\":$rss}"
+}
+
+# commands run inside target/: a CDS archive is only used with the class path it was created with
+EXEC_JAR=simple-rest-api-$VERSION-exec.jar
+PLAIN_JAR=simple-rest-api-$VERSION.jar
+NATIVE=simple-rest-api
+
+if [[ -f $TARGET/$EXEC_JAR ]]; then
+  measure jvm "$TARGET" java -jar "$EXEC_JAR"
+  measure jvm-lazy "$TARGET" java -jar "$EXEC_JAR" --spring.profiles.active=lazy
+fi
+
+if [[ -f $TARGET/$PLAIN_JAR && -d $TARGET/lib ]]; then
+  if [[ ! -f $TARGET/app.jsa ]]; then
+    # training run: the application exits once ready and the JVM writes the archive
+    (cd "$TARGET" && java -XX:ArchiveClassesAtExit=app.jsa -Duser.cds.trainingRun=true -jar "$PLAIN_JAR" \
+      --server.port="$PORT") >/dev/null 2>&1
+  fi
+  measure cds "$TARGET" java -XX:SharedArchiveFile=app.jsa -jar "$PLAIN_JAR"
+fi
+
+if [[ -x $TARGET/$NATIVE ]]; then
+  measure native "$TARGET" "./$NATIVE"
+fi
@@ -1,9 +1,12 @@
 package com.example.simple;
 
+import com.example.simple.config.UserApiRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(UserApiRuntimeHints.class)
 public class SimpleRestApiApplication {
 
     public static void main(String[] args) {
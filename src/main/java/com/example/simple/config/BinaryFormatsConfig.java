@@ -0,0 +1,54 @@
+package com.example.simple.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Binary Jackson formats for clients that ask for them with {@code Accept}: {@code application/cbor}
+ * and {@code application/x-jackson-smile}. Both carry the same fields as the JSON responses, error envelopes
+ * included, JSON stays the default.
+ * <p>
+ * Spring registers both formats on its own as soon as they are on the class path, but with mappers of its own,
+ * which would for instance write dates as arrays. These mappers come from the builder Spring Boot configures
+ * for JSON, so every format is serialized alike.
+ * <p>
+ * The reactive variant only gets Smile, for its range query: the CBOR encoder of WebFlux cannot write a stream,
+ * and its error bodies are written without content negotiation, as JSON.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    private static final MimeType[] SMILE_TYPES = {
+            new MimeType("application", "x-jackson-smile"), new MimeType("application", "*+x-jackson-smile")};
+
+    // each converter replaces the default one of its type in the Spring MVC list
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    CodecCustomizer smileCodecCustomizer(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper smile = builder.factory(new SmileFactory()).build();
+        // without explicit types the codecs would claim the JSON ones
+        return configurer -> {
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, SMILE_TYPES));
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, SMILE_TYPES));
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.simple.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ends a CDS training run once the application is ready, so the JVM dumps the classes loaded
+ * during a full startup into the archive given by {@code -XX:ArchiveClassesAtExit}.
+ * Spring Framework 6.1 offers the same as {@code -Dspring.context.exit=onRefresh}.
+ */
+@Component
+@ConditionalOnProperty("user.cds.trainingRun")
+public class CdsTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.simple.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Lets the server compression threshold see the length of short responses.
+ * <p>
+ * Tomcat compares {@code server.compression.min-response-size} with the Content-Length, which it only knows
+ * when the whole body is still in its buffer at the end of the request. Spring MVC flushes after every
+ * message converter write, which commits the response without a length, so even a two byte list got compressed.
+ * Flushes are held back here until the body reaches the threshold; past it they pass, so streamed responses
+ * still reach the client chunk by chunk.
+ */
+public class CompressionThresholdFilter extends OncePerRequestFilter {
+
+    private final long minResponseSize;
+
+    public CompressionThresholdFilter(long minResponseSize) {
+        this.minResponseSize = minResponseSize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        chain.doFilter(request, new DeferredFlushResponse(response));
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // the wrapper given to the initial dispatch keeps serving the async writes
+        return true;
+    }
+
+    private class DeferredFlushResponse extends HttpServletResponseWrapper {
+
+        private DeferredFlushOutputStream outputStream;
+
+        DeferredFlushResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new DeferredFlushOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        // bodyless ResponseEntity results are flushed this way
+        @Override
+        public void flushBuffer() throws IOException {
+            if (outputStream != null && outputStream.written >= minResponseSize) {
+                super.flushBuffer();
+            }
+        }
+    }
+
+    private class DeferredFlushOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private long written;
+
+        DeferredFlushOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (written >= minResponseSize) {
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
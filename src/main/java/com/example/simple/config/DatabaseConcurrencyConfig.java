@@ -0,0 +1,38 @@
+package com.example.simple.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Guards the pool with {@link ConcurrencyLimitingDataSource} when requests run on virtual threads.
+ * The property name is the one Spring Boot 3.2 introduced for the same switch.
+ */
+@Configuration
+@ConditionalOnProperty("spring.threads.virtual.enabled")
+public class DatabaseConcurrencyConfig {
+
+    @Bean
+    static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(Environment env) {
+        int permits = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        Duration timeout = Duration.ofMillis(
+                env.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30_000L));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // only pools are limited, wrappers like the replica routing delegate to limited pools
+                if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)) {
+                    return new ConcurrencyLimitingDataSource(dataSource, permits, timeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.simple.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, see {@link QueryCountFilter}.
+ * Statements are passed through unchanged.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    /**
+     * @return statements counted on this thread since the previous call
+     */
+    static int reset() {
+        int[] count = COUNT.get();
+        int value = count[0];
+        count[0] = 0;
+        return value;
+    }
+}
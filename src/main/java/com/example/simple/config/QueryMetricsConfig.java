@@ -0,0 +1,33 @@
+package com.example.simple.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Query count per request, timings of repository methods come from Spring Boot
+ * as {@code spring.data.repository.invocations}.
+ */
+@Configuration
+public class QueryMetricsConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer queryCountInspector() {
+        QueryCountInspector inspector = new QueryCountInspector();
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    FilterRegistrationBean<QueryCountFilter> queryCountFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<QueryCountFilter> registration =
+                new FilterRegistrationBean<>(new QueryCountFilter(meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.simple.config;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+
+/**
+ * Infrastructure of the reactive variant, see the reactive profile.
+ * <p>
+ * The R2DBC connection factory is deliberately not a bean: Spring Boot skips the JDBC DataSource
+ * when it finds one, and Flyway, the admin account and the JPA beans still need it.
+ * For the same reason R2dbcAutoConfiguration is excluded in application.yml.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveStackConfig implements DisposableBean {
+
+    private final ConnectionFactory connectionFactory;
+
+    public ReactiveStackConfig(@Value("${user.reactive.r2dbcUrl}") String r2dbcUrl) {
+        // an r2dbc:pool: url gives a connection pool
+        this.connectionFactory = ConnectionFactories.get(r2dbcUrl);
+    }
+
+    @Bean
+    DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    // Tomcat is on the class path for the servlet stack and would otherwise serve this one as well
+    @Bean
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof Disposable pool) {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.simple.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Hands out replica connections inside read-only transactions and primary connections everywhere else.
+ * The decision is made when a connection is taken, so it must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * the transaction manager asks for the connection before the read-only flag of the transaction is visible.
+ */
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String REPLICA = "replica";
+
+    public ReadOnlyRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? REPLICA : PRIMARY;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.simple.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Adds a pool for the read replica at {@code user.datasource.replica.jdbc-url} and routes
+ * read-only transactions to it, so list traffic scales with replicas instead of loading the primary.
+ * The primary pool is still configured by {@code spring.datasource}, Flyway, Hibernate bootstrap
+ * and work outside transactions use it.
+ * <p>
+ * The pools are taken as plain {@link DataSource}s, with virtual threads enabled
+ * {@link DatabaseConcurrencyConfig} wraps each of them in a {@link ConcurrencyLimitingDataSource}.
+ * <p>
+ * With open-in-view on, the first transaction of a request picks the connection
+ * for the whole request, so use it with the prod profile.
+ */
+@Configuration
+@ConditionalOnProperty("user.datasource.replica.jdbc-url")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean
+    @ConfigurationProperties("user.datasource.replica")
+    HikariDataSource replicaDataSource() {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                          @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new LazyConnectionDataSourceProxy(new ReadOnlyRoutingDataSource(primaryDataSource, replicaDataSource));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.simple.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Makes {@code server.compression.min-response-size} hold for the servlet stack, see {@link CompressionThresholdFilter}.
+ * Reactor Netty compares the threshold with the bytes actually written and needs no help.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty("server.compression.enabled")
+public class ResponseCompressionConfig {
+
+    @Bean
+    FilterRegistrationBean<CompressionThresholdFilter> compressionThresholdFilter(ServerProperties serverProperties) {
+        FilterRegistrationBean<CompressionThresholdFilter> registration = new FilterRegistrationBean<>(
+                new CompressionThresholdFilter(serverProperties.getCompression().getMinResponseSize().toBytes()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
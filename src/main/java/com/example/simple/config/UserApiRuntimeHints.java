@@ -0,0 +1,30 @@
+package com.example.simple.config;
+
+import com.example.simple.model.BulkDeleteRequest;
+import com.example.simple.model.BulkImportResult;
+import com.example.simple.model.DeleteJob;
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import com.example.simple.securiry.Role;
+import com.example.simple.util.SimpleDTO;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection hints of a native image for the types Jackson binds.
+ * Spring AOT derives hints from controller signatures, but {@link SimpleDTO} wraps its payload as Object
+ * and the bulk endpoints read their bodies by hand, so these types are never seen in a signature.
+ */
+public class UserApiRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] JSON_TYPES = {
+            User.class, UserView.class, Role.class, SimpleDTO.class,
+            BulkImportResult.class, BulkImportResult.RowError.class, BulkDeleteRequest.class, DeleteJob.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), JSON_TYPES);
+    }
+}
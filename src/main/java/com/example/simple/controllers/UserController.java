@@ -1,189 +1,455 @@
 package com.example.simple.controllers;
 
+import com.example.simple.exceptions.FieldErrorsException;
 import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.BulkDeleteRequest;
+import com.example.simple.model.BulkImportResult;
+import com.example.simple.model.DeleteJob;
 import com.example.simple.model.User;
-import com.example.simple.repositories.UserRepository;
+import com.example.simple.model.UserChangeView;
+import com.example.simple.model.UserSearch;
+import com.example.simple.model.UserView;
 import com.example.simple.securiry.Role;
+import com.example.simple.securiry.UserDetailsImpl;
+import com.example.simple.services.UserChangeFeed;
+import com.example.simple.services.UserCreationService;
+import com.example.simple.services.UserDeletionService;
+import com.example.simple.services.UserImportService;
+import com.example.simple.services.UserService;
+import com.example.simple.services.UserTextIndex;
+import com.example.simple.services.UserTextIndexer;
+import com.example.simple.services.UserViewCache;
+import com.example.simple.util.BirthDateCursor;
 import com.example.simple.util.SimpleDTO;
-import jakarta.annotation.PostConstruct;
-import jakarta.validation.Valid;
+import com.example.simple.validation.SearchPolicy;
+import com.example.simple.validation.UserValidator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.validation.FieldError;
-import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.security.Principal;
 import java.time.LocalDate;
-import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(value = "/users")
 public class UserController {
 
-    @Value("${user.minAge}")
-    private int minAge;
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
-    private volatile LocalDate lastValidBirthDate;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
 
-    private final UserRepository repo;
+    // If-Match list of entity tags, optionally weak: W/"3", "4"
+    private static final Pattern ENTITY_TAGS = Pattern.compile("\\s*(?:W/)?\"[^\"]*\"\\s*(?:,\\s*(?:W/)?\"[^\"]*\"\\s*)*");
 
-    @Autowired
-    public UserController(UserRepository repo) {
-        this.repo = repo;
-    }
+    private static final Pattern ENTITY_TAG = Pattern.compile("(W/)?\"([^\"]*)\"");
+
+    private static final Pattern VERSION = Pattern.compile("\\d{1,18}");
+
+    @Value("${user.page.maxSize:1000}")
+    private int maxPageSize;
+
+    @Value("${user.page.streamChunkSize:500}")
+    private int streamChunkSize;
+
+    @Value("${user.textIndex.maxResults:100}")
+    private int maxTextSearchSize;
+
+    @Value("${user.textIndex.maxQueryLength:100}")
+    private int maxTextQueryLength;
+
+    @Value("${user.changes.maxResults:1000}")
+    private int maxChangesSize;
+
+    private final UserService userService;
+
+    private final UserCreationService creationService;
 
-    @PostConstruct
-    private void init() {
-        /*
-        One could force clients to provide info about timezone in order to properly calculate
-        lastValidBirthDate, but for the sake of simplicity LocalDate class is used here
-         */
-        lastValidBirthDate = LocalDate.now().minusYears(minAge);
+    private final UserImportService importService;
 
-        var exeService = Executors.newSingleThreadScheduledExecutor();
+    private final UserDeletionService deletionService;
 
-        long millisPerDay = ChronoUnit.DAYS.getDuration().toMillis();
-        long millisOfDay = LocalTime.now().toNanoOfDay() / 1_000_000L;
-        long initialDelay = millisPerDay - millisOfDay; // millis to the end of the current day
+    private final UserViewCache viewCache;
 
-        exeService.scheduleAtFixedRate(() -> lastValidBirthDate = LocalDate.now().minusYears(minAge),
-                initialDelay,
-                millisPerDay,
-                TimeUnit.MILLISECONDS);
+    private final UserTextIndex textIndex;
+
+    private final UserTextIndexer textIndexer;
+
+    private final UserChangeFeed changeFeed;
+
+    private final UserValidator validator;
+
+    private final SearchPolicy searchPolicy;
+
+    private final PasswordEncoder encoder;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public UserController(UserService userService, UserCreationService creationService,
+                          UserImportService importService, UserDeletionService deletionService,
+                          UserViewCache viewCache, UserTextIndex textIndex, UserTextIndexer textIndexer,
+                          UserChangeFeed changeFeed, UserValidator validator, SearchPolicy searchPolicy,
+                          PasswordEncoder encoder, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.creationService = creationService;
+        this.importService = importService;
+        this.deletionService = deletionService;
+        this.viewCache = viewCache;
+        this.textIndex = textIndex;
+        this.textIndexer = textIndexer;
+        this.changeFeed = changeFeed;
+        this.validator = validator;
+        this.searchPolicy = searchPolicy;
+        this.encoder = encoder;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
     }
 
+    /*
+    Safe to retry: a request repeating the Idempotency-Key and payload of a created user,
+    or racing with one for the same email, gets its 201 and Location without another insert
+     */
     @PostMapping(consumes = "application/json")
-    private ResponseEntity<Void> createUser(@Valid @RequestBody User user, UriComponentsBuilder ucb) {
-        checkEmail(user.getEmail());
-        checkBirthDate(user.getBirthDate());
-
-        user.setId(null); // to avoid inconsistency
-        repo.save(user);
+    private ResponseEntity<Void> createUser(@RequestBody User user, UriComponentsBuilder ucb, Principal principal,
+                                            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new FieldException(IDEMPOTENCY_KEY, "Idempotency-Key should have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        validator.validateNew(user);
+        Long id = creationService.create(user, principal.getName(), idempotencyKey);
 
         URI locationOfNewUser = ucb
                 .path("users/{id}")
-                .buildAndExpand(user.getId())
+                .buildAndExpand(id)
                 .toUri();
         return ResponseEntity.created(locationOfNewUser).build();
     }
 
-    private void checkEmail(String email) {
-        if (repo.existsByEmail(email)) {
-            throw new FieldException("User with email " + email + " is already registered");
-        }
+    /*
+    Accepts either a JSON array or an NDJSON stream of users, rows are read one at a time,
+    so the feed is never materialized in memory as a whole
+     */
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    private ResponseEntity<SimpleDTO> createUsers(InputStream body) throws IOException {
+        BulkImportResult result = importService.importUsers(objectMapper.readerFor(User.class).readValues(body));
+        return ResponseEntity.ok(SimpleDTO.of(result));
     }
 
-    private void checkBirthDate(LocalDate birthDate) {
-        if (birthDate.isAfter(lastValidBirthDate)) {
-            throw new FieldException(
-                    "Only users who are more than " + minAge + " years are allowed to use resource. " +
-                            "Provided birth date: " + birthDate);
+    /*
+    Only the provided fields are written, in one UPDATE without loading the user.
+    With If-Match the update applies only to a version the client lists, otherwise 412 is returned.
+    The ETag of the new version is returned when the client listed a single version
+     */
+    @PatchMapping(path = "/{id}", consumes = "application/json")
+    private ResponseEntity<Void> update(@PathVariable Long id, @RequestBody User user,
+                                       @AuthenticationPrincipal UserDetailsImpl principal,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        // the principal is resolved (and cached) by DatabaseUserDetailsService, no query is needed to authorize
+        User principalUser = principal.getUser();
+        if (!principalUser.getId().equals(id) && !Role.ADMIN.equals(principalUser.getRole())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        validator.validatePatch(user);
+
+        User changes = new User();
+        if (user.getPassword() != null) changes.setPassword(encoder.encode(user.getPassword()));
+        changes.setFirstName(user.getFirstName());
+        changes.setLastName(user.getLastName());
+        changes.setBirthDate(user.getBirthDate());
+        changes.setAddress(user.getAddress());
+        changes.setPhoneNumber(user.getPhoneNumber());
+
+        Set<Long> expectedVersions = parseIfMatch(ifMatch);
+        switch (userService.update(id, changes, expectedVersions)) {
+            case NOT_FOUND:
+                return ResponseEntity.notFound().build();
+            case VERSION_MISMATCH:
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            default:
+                break;
         }
+
+        return expectedVersions == null || expectedVersions.size() != 1
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.ok().eTag(eTag(expectedVersions.iterator().next() + 1)).build();
     }
 
-    @PatchMapping(path = "/{id}", consumes = "application/json")
-    private ResponseEntity<Void> update(@PathVariable Long id, @RequestBody User user, Principal principal) {
-        Optional<User> userOptional = repo.findById(id);
-        if (userOptional.isEmpty()) {
-            return ResponseEntity.notFound().build();
+    private static String eTag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /*
+    If-Match is * or a list of entity tags, compared strongly as RFC 9110 requires: weak tags and tags
+    that are no version never match, a list of only those fails with 412. Null when any version matches
+     */
+    private static Set<Long> parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
         }
+        if (!ENTITY_TAGS.matcher(ifMatch).matches()) {
+            throw new FieldException(HttpHeaders.IF_MATCH, "Malformed If-Match header: " + ifMatch);
+        }
+        Set<Long> versions = new HashSet<>();
+        Matcher tag = ENTITY_TAG.matcher(ifMatch);
+        while (tag.find()) {
+            if (tag.group(1) == null && VERSION.matcher(tag.group(2)).matches()) {
+                versions.add(Long.valueOf(tag.group(2)));
+            }
+        }
+        return versions;
+    }
 
-        User userFromRepository = userOptional.get();
-        User principalUser = repo.findByEmail(principal.getName()).get();
+    @ResponseStatus(HttpStatus.OK)
+    @DeleteMapping("/{id}")
+    private void delete(@PathVariable Long id) {
+        userService.delete(id);
+    }
 
-        if (!principalUser.equals(userFromRepository) && !Role.ADMIN.equals(principalUser.getRole())) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    /*
+    Up to user.delete.syncLimit users are deleted within the request,
+    larger requests are accepted as a job, its status is available at the returned location
+     */
+    @DeleteMapping(consumes = "application/json")
+    private ResponseEntity<SimpleDTO> deleteAll(@RequestBody BulkDeleteRequest request, UriComponentsBuilder ucb) {
+        if (request.size() == 0) {
+            throw new FieldException("Ids or emails of users to delete should be provided");
         }
 
+        if (deletionService.isSynchronous(request)) {
+            return ResponseEntity.ok(SimpleDTO.of(Map.of("deleted", deletionService.delete(request))));
+        }
 
+        DeleteJob job = deletionService.submit(request);
+        URI locationOfJob = ucb
+                .path("users/delete-jobs/{id}")
+                .buildAndExpand(job.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(locationOfJob).body(SimpleDTO.of(job));
+    }
 
-        if (user.getPassword() != null) {
-            if (!user.getPassword().isBlank()) {
-                userFromRepository.setPassword(user.getPassword());
-            } else {
-                throw new FieldException("Password should not be blank");
-            }
+    @GetMapping("/delete-jobs/{jobId}")
+    private ResponseEntity<SimpleDTO> getDeleteJob(@PathVariable UUID jobId) {
+        return deletionService.findJob(jobId)
+                .map(job -> ResponseEntity.ok(SimpleDTO.of(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /*
+    Served from UserViewCache. The version is a strong ETag, a matching If-None-Match
+    is answered with 304 and no body by the ResponseEntity handling of Spring MVC
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<UserView> getById(@PathVariable Long id) {
+        return viewCache.get(id)
+                .map(user -> ResponseEntity.ok().eTag(eTag(user.version())).body(user))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping
+    public ResponseEntity<List<UserView>> getByBirthDateRange(@RequestParam LocalDate from,
+                                                          @RequestParam LocalDate to) {
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().build();
+        } else {
+            return ResponseEntity.ok(userService.findByBirthDateBetween(from, to));
         }
+    }
 
-        if (user.getFirstName() != null) {
-            if (!user.getFirstName().isBlank()) {
-                userFromRepository.setFirstName(user.getFirstName());
-            } else {
-                throw new FieldException("First name should not be blank");
-            }
+    /*
+    Keyset pagination: the response carries a Link header with rel="next"
+    as long as the page is full, the token in it encodes the last (birthDate, id) returned
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<List<UserView>> getPageByBirthDateRange(@RequestParam LocalDate from,
+                                                                  @RequestParam LocalDate to,
+                                                                  @RequestParam int limit,
+                                                                  @RequestParam(required = false) String after) {
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new FieldException("limit", "Limit should be between 1 and " + maxPageSize + ". Provided limit: " + limit);
         }
 
-        if (user.getLastName() != null) {
-            if (!user.getLastName().isBlank()) {
-                userFromRepository.setLastName(user.getLastName());
-            } else {
-                throw new FieldException("Last name should not be blank");
-            }
+        BirthDateCursor cursor = after == null ? null : BirthDateCursor.decode(after);
+        List<UserView> page = userService.findPage(from, to, cursor, limit);
+
+        if (page.size() < limit) {
+            return ResponseEntity.ok(page);
         }
 
-        if (user.getBirthDate() != null) {
-            checkBirthDate(user.getBirthDate());
-            userFromRepository.setBirthDate(user.getBirthDate());
+        UserView last = page.get(page.size() - 1);
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", new BirthDateCursor(last.birthDate(), last.id()).encode())
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page);
+    }
+
+    /*
+    One query built from the given filters, combinations that no index serves are refused by SearchPolicy.
+    Role and enabled reveal account state, only admins may filter by them
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<UserView>> search(@RequestParam(required = false) String email,
+                                                 @RequestParam(required = false) String firstName,
+                                                 @RequestParam(required = false) String lastName,
+                                                 @RequestParam(required = false) Role role,
+                                                 @RequestParam(required = false) Boolean enabled,
+                                                 @RequestParam(required = false) LocalDate from,
+                                                 @RequestParam(required = false) LocalDate to,
+                                                 @RequestParam(defaultValue = "birthDate") String sort,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 HttpServletRequest request) {
+        if ((role != null || enabled != null) && !request.isUserInRole(Role.ADMIN.name())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        if (user.getAddress() != null) userFromRepository.setAddress(user.getAddress());
-        if (user.getPhoneNumber() != null) userFromRepository.setPhoneNumber(user.getPhoneNumber());
+        UserSearch search = new UserSearch(email, firstName, lastName, role, enabled, from, to,
+                UserSearch.Order.parse(sort), UserSearch.isDescending(sort), limit);
+        searchPolicy.check(search);
+        return ResponseEntity.ok(userService.search(search));
+    }
 
-        return ResponseEntity.ok().build();
+    /*
+    Free-text lookup served by the Lucene index alone, best matches first.
+    The index follows the table asynchronously, a user shows up shortly after the write committed
+     */
+    @GetMapping(path = "/search", params = "q")
+    public ResponseEntity<List<UserView>> searchText(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > maxTextSearchSize) {
+            throw new FieldException("limit", "Limit should be between 1 and " + maxTextSearchSize + ". Provided limit: " + limit);
+        }
+        // every word adds several clauses to the Lucene query
+        if (q.length() > maxTextQueryLength) {
+            throw new FieldException("q", "Q should be at most " + maxTextQueryLength + " characters long. Provided length: " + q.length());
+        }
+        return ResponseEntity.ok(textIndex.search(q, limit));
     }
 
-    @ResponseStatus(HttpStatus.OK)
-    @DeleteMapping("/{id}")
-    private void delete(@PathVariable Long id) {
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Void> rebuildTextIndex() {
+        textIndexer.rebuild();
+        return ResponseEntity.accepted().build();
+    }
 
-        repo.deleteById(id);
+    /*
+    Change feed for incremental sync: the changes numbered after since, in order. A consumer continues
+    from the last seq it received; when nothing newer is published the request is held until a change is,
+    or answered with an empty list after user.changes.longPollTimeout
+     */
+    @GetMapping("/changes")
+    public DeferredResult<List<UserChangeView>> changes(@RequestParam(defaultValue = "0") long since,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        if (since < 0) {
+            throw new FieldException("since", "Since should not be negative. Provided since: " + since);
+        }
+        if (limit < 1 || limit > maxChangesSize) {
+            throw new FieldException("limit", "Limit should be between 1 and " + maxChangesSize + ". Provided limit: " + limit);
+        }
+        return changeFeed.changesAfter(since, limit);
     }
 
-    @GetMapping
-    public ResponseEntity<List<User>> getByBirthDateRange(@RequestParam LocalDate from,
-                                                          @RequestParam LocalDate to) {
+    /*
+    Streaming mode: the same JSON array as the plain range query, but written chunk by chunk
+    while walking the keyset, so neither the result nor the response buffer grows with the range
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamByBirthDateRange(@RequestParam LocalDate from,
+                                                                        @RequestParam LocalDate to) {
         if (from.isAfter(to)) {
             return ResponseEntity.badRequest().build();
-        } else {
-            return ResponseEntity.ok(repo.findByBirthDateBetween(from, to));
         }
+
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.createGenerator(out);
+            generator.writeStartArray();
+
+            BirthDateCursor cursor = null;
+            List<UserView> chunk;
+            do {
+                chunk = userService.findPage(from, to, cursor, streamChunkSize);
+                for (UserView user : chunk) {
+                    generator.writeObject(user);
+                }
+                generator.flush();
+
+                if (!chunk.isEmpty()) {
+                    UserView last = chunk.get(chunk.size() - 1);
+                    cursor = new BirthDateCursor(last.birthDate(), last.id());
+                }
+            } while (chunk.size() == streamChunkSize);
+
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @ExceptionHandler(MissingServletRequestParameterException.class)
     private ResponseEntity<SimpleDTO> handle(MissingServletRequestParameterException ex) {
+        countValidationFailure(ex.getParameterName());
         return ResponseEntity.badRequest()
                 .body(SimpleDTO.of(ex.getMessage()));
     }
 
-    @ExceptionHandler(MethodArgumentNotValidException.class)
-    private ResponseEntity<SimpleDTO> handleValidationExceptions(MethodArgumentNotValidException ex) {
-        Map<String, String> errors = new HashMap<>();
-        ex.getBindingResult().getAllErrors().forEach((error) -> {
-            String fieldName = ((FieldError) error).getField();
-            String errorMessage = error.getDefaultMessage();
-            errors.put(fieldName, errorMessage);
-        });
+    @ExceptionHandler(FieldErrorsException.class)
+    private ResponseEntity<SimpleDTO> handleValidationExceptions(FieldErrorsException ex) {
+        ex.getErrors().keySet().forEach(this::countValidationFailure);
         return ResponseEntity.badRequest()
-                .body(SimpleDTO.of(errors));
+                .body(SimpleDTO.of(ex.getErrors()));
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    private ResponseEntity<SimpleDTO> handleRejectedTasks(TaskRejectedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(SimpleDTO.of("Too many jobs are queued, retry later"));
     }
 
     @ExceptionHandler(FieldException.class)
-    private ResponseEntity<SimpleDTO> handleCustomExceptions(Exception ex) {
+    private ResponseEntity<SimpleDTO> handleCustomExceptions(FieldException ex) {
 //        ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+        countValidationFailure(ex.getField() != null ? ex.getField() : "none");
         return ResponseEntity.badRequest()
                 .body(SimpleDTO.of(ex.getMessage()));
     }
+
+    private void countValidationFailure(String field) {
+        meterRegistry.counter("user.validation.failures", "field", field).increment();
+    }
 }
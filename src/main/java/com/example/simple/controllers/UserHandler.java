@@ -0,0 +1,155 @@
+package com.example.simple.controllers;
+
+import com.example.simple.exceptions.FieldErrorsException;
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import com.example.simple.repositories.ReactiveUserRepository;
+import com.example.simple.util.SimpleDTO;
+import com.example.simple.validation.UserValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Reactive counterpart of the create, lookup and range endpoints of {@link UserController},
+ * with the same statuses and error bodies. Routes are declared in {@link UserRouter}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class UserHandler {
+
+    private static final List<MediaType> RANGE_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM,
+            MediaType.parseMediaType("application/x-jackson-smile"));
+
+    private final ReactiveUserRepository repo;
+
+    private final UserValidator validator;
+
+    private final PasswordEncoder encoder;
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public UserHandler(ReactiveUserRepository repo, UserValidator validator, PasswordEncoder encoder,
+                       MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.validator = validator;
+        this.encoder = encoder;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Mono<ServerResponse> create(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .switchIfEmpty(Mono.error(() -> new FieldException("User should be provided")))
+                .doOnNext(validator::validateNew)
+                .flatMap(user -> repo.existsByEmail(user.getEmail())
+                        .flatMap(exists -> exists ? Mono.error(alreadyRegistered(user)) : Mono.just(user)))
+                // hashing is deliberately slow, keep it off the event loop
+                .flatMap(user -> Mono.fromCallable(() -> {
+                    user.setId(null); // to avoid inconsistency
+                    user.setPassword(encoder.encode(user.getPassword()));
+                    return user;
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(user -> repo.insert(user)
+                        // a concurrent registration of the same email won the race
+                        .onErrorMap(DataIntegrityViolationException.class, ex -> alreadyRegistered(user)))
+                .flatMap(user -> ServerResponse.created(request.uriBuilder().path("/{id}").build(user.getId()))
+                        .build());
+    }
+
+    /*
+    The version is a strong ETag, a matching If-None-Match is answered with 304 and no body
+     */
+    public Mono<ServerResponse> getById(ServerRequest request) {
+        return Mono.fromSupplier(() -> parseId(request.pathVariable("id")))
+                .flatMap(repo::findViewById)
+                .flatMap(user -> {
+                    String eTag = "\"" + user.version() + "\"";
+                    if (request.headers().header(HttpHeaders.IF_NONE_MATCH).stream()
+                            .flatMap(header -> List.of(header.split(",")).stream())
+                            .map(String::trim)
+                            .anyMatch(candidate -> candidate.equals(eTag) || candidate.equals("*"))) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                    }
+                    return ServerResponse.ok().eTag(eTag).bodyValue(user);
+                })
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /*
+    Rows are written as the database delivers them and only as fast as the client reads:
+    a JSON array by default, one object per line for application/x-ndjson, events for text/event-stream,
+    a Smile array for application/x-jackson-smile
+     */
+    public Mono<ServerResponse> getByBirthDateRange(ServerRequest request) {
+        // parameter errors are signalled, not thrown, so the error handlers of the router see them
+        return Mono.defer(() -> getByBirthDateRangeNow(request));
+    }
+
+    private Mono<ServerResponse> getByBirthDateRangeNow(ServerRequest request) {
+        LocalDate from = dateParam(request, "from");
+        LocalDate to = dateParam(request, "to");
+        if (from.isAfter(to)) {
+            return ServerResponse.badRequest().build();
+        }
+
+        MediaType contentType = request.headers().accept().stream()
+                .filter(accepted -> RANGE_TYPES.stream().anyMatch(accepted::equalsTypeAndSubtype))
+                .findFirst()
+                .orElse(MediaType.APPLICATION_JSON);
+        return ServerResponse.ok()
+                .contentType(contentType)
+                .body(repo.findByBirthDateBetween(from, to), UserView.class);
+    }
+
+    public Mono<ServerResponse> handle(FieldErrorsException ex) {
+        ex.getErrors().keySet().forEach(this::countValidationFailure);
+        return ServerResponse.badRequest().bodyValue(SimpleDTO.of(ex.getErrors()));
+    }
+
+    public Mono<ServerResponse> handle(FieldException ex) {
+        countValidationFailure(ex.getField() != null ? ex.getField() : "none");
+        return ServerResponse.badRequest().bodyValue(SimpleDTO.of(ex.getMessage()));
+    }
+
+    private static FieldException alreadyRegistered(User user) {
+        return new FieldException("email", "User with email " + user.getEmail() + " is already registered");
+    }
+
+    private static Long parseId(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException ex) {
+            throw new FieldException("id", "Malformed id: " + id);
+        }
+    }
+
+    private static LocalDate dateParam(ServerRequest request, String name) {
+        String value = request.queryParam(name).orElseThrow(() -> new FieldException(name,
+                "Required request parameter '" + name + "' for method parameter type LocalDate is not present"));
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new FieldException(name, "Malformed date: " + value);
+        }
+    }
+
+    private void countValidationFailure(String field) {
+        meterRegistry.counter("user.validation.failures", "field", field).increment();
+    }
+}
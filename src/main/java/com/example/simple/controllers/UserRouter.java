@@ -0,0 +1,33 @@
+package com.example.simple.controllers;
+
+import com.example.simple.exceptions.FieldErrorsException;
+import com.example.simple.exceptions.FieldException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+/**
+ * The /users API of the reactive profile. Bulk import, updates and deletes are served by the servlet stack only.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class UserRouter {
+
+    @Bean
+    RouterFunction<ServerResponse> userRoutes(UserHandler handler) {
+        return RouterFunctions.route()
+                .path("/users", users -> users
+                        .POST(contentType(MediaType.APPLICATION_JSON), handler::create)
+                        .GET("/{id}", handler::getById)
+                        .GET(handler::getByBirthDateRange))
+                .onError(FieldErrorsException.class, (ex, request) -> handler.handle((FieldErrorsException) ex))
+                .onError(FieldException.class, (ex, request) -> handler.handle((FieldException) ex))
+                .build();
+    }
+}
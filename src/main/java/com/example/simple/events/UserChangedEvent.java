@@ -0,0 +1,8 @@
+package com.example.simple.events;
+
+/**
+ * Published after a user was updated or deleted, so in-process copies of it can be dropped.
+ * Either field may be null when the mutation only knew the other one.
+ */
+public record UserChangedEvent(Long id, String email) {
+}
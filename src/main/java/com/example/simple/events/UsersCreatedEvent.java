@@ -0,0 +1,9 @@
+package com.example.simple.events;
+
+import java.util.Collection;
+
+/**
+ * Published after users were inserted, so in-process indexes of users can pick them up.
+ */
+public record UsersCreatedEvent(Collection<Long> ids) {
+}
@@ -0,0 +1,9 @@
+package com.example.simple.events;
+
+import java.util.Collection;
+
+/**
+ * Published after a set-based delete, in-process copies of the matching users have to be dropped.
+ */
+public record UsersDeletedEvent(Collection<Long> ids, Collection<String> emails) {
+}
@@ -0,0 +1,18 @@
+package com.example.simple.exceptions;
+
+import java.util.Map;
+
+public class FieldErrorsException extends RuntimeException {
+
+    private final Map<String, String> errors;
+
+    public FieldErrorsException(Map<String, String> errors) {
+        super(errors.toString());
+        this.errors = errors;
+    }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+}
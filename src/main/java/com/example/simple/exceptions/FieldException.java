@@ -2,8 +2,20 @@ package com.example.simple.exceptions;
 
 public class FieldException extends RuntimeException {
 
+    // name of the offending field or parameter, null if the error is not about a single one
+    private final String field;
+
     public FieldException(String message) {
+        this(null, message);
+    }
+
+    public FieldException(String field, String message) {
         super(message);
+        this.field = field;
+    }
+
+    public String getField() {
+        return field;
     }
 
 }
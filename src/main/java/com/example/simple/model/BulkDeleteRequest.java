@@ -0,0 +1,21 @@
+package com.example.simple.model;
+
+import java.util.List;
+
+/**
+ * Users to delete, identified by id, by email or both.
+ */
+public record BulkDeleteRequest(List<Long> ids, List<String> emails) {
+
+    public List<Long> ids() {
+        return ids == null ? List.of() : ids;
+    }
+
+    public List<String> emails() {
+        return emails == null ? List.of() : emails;
+    }
+
+    public int size() {
+        return ids().size() + emails().size();
+    }
+}
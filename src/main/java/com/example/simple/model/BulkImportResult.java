@@ -0,0 +1,14 @@
+package com.example.simple.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk import: how many users were stored and why the other rows were rejected.
+ * Row numbers are zero-based positions in the submitted array or NDJSON stream.
+ */
+public record BulkImportResult(int created, List<RowError> errors) {
+
+    public record RowError(int row, Map<String, String> errors) {
+    }
+}
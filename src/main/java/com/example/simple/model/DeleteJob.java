@@ -0,0 +1,65 @@
+package com.example.simple.model;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of an asynchronous bulk delete, as reported by the job status endpoint.
+ */
+public class DeleteJob {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final UUID id = UUID.randomUUID();
+
+    private final int requested;
+
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    private volatile Status status = Status.QUEUED;
+
+    private volatile String error;
+
+    public DeleteJob(int requested) {
+        this.requested = requested;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getDeleted() {
+        return deleted.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void started() {
+        status = Status.RUNNING;
+    }
+
+    public void deleted(int count) {
+        deleted.addAndGet(count);
+    }
+
+    public void done() {
+        status = Status.DONE;
+    }
+
+    public void failed(String message) {
+        error = message;
+        status = Status.FAILED;
+    }
+}
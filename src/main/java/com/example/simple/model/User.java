@@ -2,10 +2,8 @@ package com.example.simple.model;
 
 
 import com.example.simple.securiry.Role;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
-import jakarta.validation.constraints.Email;
-import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
 import java.time.LocalDate;
@@ -18,31 +16,49 @@ import java.time.LocalDate;
 @Table(name = "users")
 public class User {
 
-    private static final String EMAIL_PATTERN = "^[a-zA-Z0-9_!#$%&’*+/=?`{|}~^.-]+@[a-zA-Z0-9.-]+$";
-
+    /*
+    Pooled sequence instead of IDENTITY: ids are reserved in blocks of allocationSize,
+    so Hibernate knows them before the INSERT and can send inserts as JDBC batches
+     */
     @Id
-    @GeneratedValue//(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
-    @Column(unique = true, nullable = false)
-    @Email(regexp = EMAIL_PATTERN)
+    // exposed to clients only as the ETag of the user resource
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    // payload rules are checked by UserValidator, uniqueness ignores case (see emailLower)
+    @Column(nullable = false)
     private String email;
 
-    @NotBlank
+    // lower-cased email computed by the database, backs the case-insensitive unique index and lookups
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private String emailLower;
+
+    @Column(nullable = false)
     private String password;
 
     @Enumerated(EnumType.STRING)
-    private Role role;
+    private Role role = Role.BASIC;
 
     private boolean enabled = true;
 
-    @NotBlank
+    @Column(nullable = false)
     private String firstName;
 
-    @NotBlank
+    @Column(nullable = false)
     private String lastName;
 
-    @NotNull
+    // lower-cased last name computed by the database, backs the prefix search by last name
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private String lastNameLower;
+
+    @Column(nullable = false)
     private LocalDate birthDate;
 
     private String address;
@@ -0,0 +1,57 @@
+package com.example.simple.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Outbox row of one user mutation, see {@code UserOutbox} and {@code UserChangeRelay}.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PUBLIC)
+@Entity
+@Table(name = "user_changes")
+public class UserChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    // insertion order only, rows of concurrent transactions commit in any order of it
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // position in the published feed, null until the relay has published the row
+    private Long seq;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+
+    public UserChangeView toView() {
+        return new UserChangeView(seq, userId, type, changedAt);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserChange change)) return false;
+
+        return id.equals(change.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.simple.model;
+
+import java.time.Instant;
+
+/**
+ * Published user mutation as served by {@code GET /users/changes} and handed to the sinks.
+ * It names the user only: consumers read the current state with {@code GET /users/{id}}, deleted users are gone.
+ *
+ * @param seq position in the feed, consecutive from one change to the next
+ */
+public record UserChangeView(
+        Long seq,
+        Long userId,
+        UserChange.Type type,
+        Instant changedAt) {
+}
@@ -0,0 +1,68 @@
+package com.example.simple.model;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.securiry.Role;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+
+/**
+ * Filters of {@code GET /users/search}, a null field does not filter.
+ * Name and email filters are case-insensitive prefixes, {@code from} and {@code to} bound the birth date inclusively.
+ */
+public record UserSearch(
+        String email,
+        String firstName,
+        String lastName,
+        Role role,
+        Boolean enabled,
+        LocalDate from,
+        LocalDate to,
+        Order order,
+        boolean descending,
+        int limit) {
+
+    /**
+     * Sort keys, each backed by an index that also serves its tie-breaker.
+     */
+    public enum Order {
+        BIRTH_DATE("birthDate", "birthDate", "id"),
+        EMAIL("email", "emailLower"),
+        LAST_NAME("lastName", "lastNameLower", "id");
+
+        private final String parameter;
+
+        private final String[] attributes;
+
+        Order(String parameter, String... attributes) {
+            this.parameter = parameter;
+            this.attributes = attributes;
+        }
+
+        public String parameter() {
+            return parameter;
+        }
+
+        /**
+         * @param sort a sort key parameter, prefixed with {@code -} for descending order
+         */
+        public static Order parse(String sort) {
+            String key = sort.startsWith("-") ? sort.substring(1) : sort;
+            for (Order order : values()) {
+                if (order.parameter.equals(key)) {
+                    return order;
+                }
+            }
+            throw new FieldException("sort", "Sort should be birthDate, email or lastName, optionally prefixed by -. " +
+                    "Provided sort: " + sort);
+        }
+    }
+
+    public static boolean isDescending(String sort) {
+        return sort.startsWith("-");
+    }
+
+    public Sort sort() {
+        return Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, order.attributes);
+    }
+}
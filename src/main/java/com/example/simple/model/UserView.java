@@ -0,0 +1,21 @@
+package com.example.simple.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+
+/**
+ * Read model of {@link User} for the GET endpoints.
+ * Selected directly by repository queries, so rows are never hydrated into managed entities
+ * and credentials or authorization fields never reach the serializer.
+ */
+public record UserView(
+        Long id,
+        @JsonIgnore Long version,
+        String email,
+        String firstName,
+        String lastName,
+        LocalDate birthDate,
+        String address,
+        String phoneNumber) {
+}
@@ -0,0 +1,132 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import com.example.simple.securiry.Role;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Counterpart of {@link UserRepository} for the reactive stack, over R2DBC on the same schema.
+ * Plain SQL on the {@link DatabaseClient}: a Spring Data R2DBC repository for the JPA entity
+ * would clash with the JPA repositories in the strict multi-store mode.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserRepository {
+
+    private static final String VIEW_COLUMNS =
+            "id, version, email, first_name, last_name, birth_date, address, phone_number";
+
+    private final DatabaseClient db;
+
+    @Autowired
+    public ReactiveUserRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    public Mono<Boolean> existsByEmail(String email) {
+        return db.sql("select count(*) from users where email_lower = lower(:email)")
+                .bind("email", email)
+                .map(row -> row.get(0, Long.class) > 0)
+                .one();
+    }
+
+    public Mono<User> findByEmail(String email) {
+        return db.sql("select * from users where email_lower = lower(:email)")
+                .bind("email", email)
+                .map(ReactiveUserRepository::user)
+                .one();
+    }
+
+    public Mono<UserView> findViewById(Long id) {
+        return db.sql("select " + VIEW_COLUMNS + " from users where id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::view)
+                .one();
+    }
+
+    /**
+     * Rows are emitted as the subscriber requests them, ordered along the (birth_date, id) index.
+     */
+    public Flux<UserView> findByBirthDateBetween(LocalDate from, LocalDate to) {
+        return db.sql("select " + VIEW_COLUMNS + " from users where birth_date between :from and :to"
+                        + " order by birth_date, id")
+                .bind("from", from)
+                .bind("to", to)
+                .map(ReactiveUserRepository::view)
+                .all();
+    }
+
+    /**
+     * Inserts a new user with an id drawn from users_seq. Hibernate treats every sequence value
+     * as the top of a block of allocationSize ids, so a value used directly never falls into one of its blocks.
+     */
+    public Mono<User> insert(User user) {
+        return db.sql("select next value for users_seq")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> {
+                    user.setId(id);
+                    DatabaseClient.GenericExecuteSpec spec = db.sql("""
+                                    insert into users (id, email, password, role, enabled,
+                                                       first_name, last_name, birth_date, address, phone_number)
+                                    values (:id, :email, :password, :role, :enabled,
+                                            :firstName, :lastName, :birthDate, :address, :phoneNumber)
+                                    """)
+                            .bind("id", id)
+                            .bind("email", user.getEmail())
+                            .bind("password", user.getPassword())
+                            .bind("enabled", user.isEnabled())
+                            .bind("firstName", user.getFirstName())
+                            .bind("lastName", user.getLastName())
+                            .bind("birthDate", user.getBirthDate());
+                    spec = bindNullable(spec, "role", user.getRole() == null ? null : user.getRole().name());
+                    spec = bindNullable(spec, "address", user.getAddress());
+                    spec = bindNullable(spec, "phoneNumber", user.getPhoneNumber());
+                    return spec.fetch().rowsUpdated().thenReturn(user);
+                });
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, String value) {
+        return value == null ? spec.bindNull(name, String.class) : spec.bind(name, value);
+    }
+
+    private static UserView view(Readable row) {
+        return new UserView(
+                row.get("id", Long.class),
+                row.get("version", Long.class),
+                row.get("email", String.class),
+                row.get("first_name", String.class),
+                row.get("last_name", String.class),
+                row.get("birth_date", LocalDate.class),
+                row.get("address", String.class),
+                row.get("phone_number", String.class));
+    }
+
+    private static User user(Readable row) {
+        String role = row.get("role", String.class);
+        User user = new User(
+                row.get("email", String.class),
+                row.get("password", String.class),
+                role == null ? null : Role.valueOf(role),
+                row.get("first_name", String.class),
+                row.get("last_name", String.class),
+                row.get("birth_date", LocalDate.class));
+        user.setId(row.get("id", Long.class));
+        user.setVersion(row.get("version", Long.class));
+        user.setEmailLower(row.get("email_lower", String.class));
+        user.setEnabled(Boolean.TRUE.equals(row.get("enabled", Boolean.class)));
+        user.setAddress(row.get("address", String.class));
+        user.setPhoneNumber(row.get("phone_number", String.class));
+        return user;
+    }
+}
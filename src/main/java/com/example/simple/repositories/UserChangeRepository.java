@@ -0,0 +1,54 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.UserChange;
+import com.example.simple.model.UserChangeView;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface UserChangeRepository extends JpaRepository<UserChange, Long> {
+
+    /*
+    Outbox rows are inserted from the users table in one statement per mutation, whatever the number of users:
+    only users that exist get a row, so deletes have to write theirs before deleting
+     */
+    @Modifying
+    @Query(value = """
+            insert into user_changes (user_id, type, changed_at)
+            select id, :type, :changedAt from users where id in :ids
+            """, nativeQuery = true)
+    int insertForIds(@Param("ids") Collection<Long> ids, @Param("type") String type, @Param("changedAt") Instant changedAt);
+
+    @Modifying
+    @Query(value = """
+            insert into user_changes (user_id, type, changed_at)
+            select id, :type, :changedAt from users where email_lower in :emails
+            """, nativeQuery = true)
+    int insertForEmails(@Param("emails") Collection<String> emails, @Param("type") String type, @Param("changedAt") Instant changedAt);
+
+    // locked, so a relay of another instance waits instead of publishing the same rows
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from UserChange c where c.seq is null order by c.id")
+    List<UserChange> findUnpublished(Pageable pageable);
+
+    @Query("select coalesce(max(c.seq), 0) from UserChange c")
+    long findLastSeq();
+
+    @Query("select new com.example.simple.model.UserChangeView(c.seq, c.userId, c.type, c.changedAt) "
+            + "from UserChange c where c.seq > :since order by c.seq")
+    List<UserChangeView> findPublishedAfter(@Param("since") long since, Pageable pageable);
+
+    // the last published row always stays, numbering continues from it
+    @Modifying
+    @Query("delete from UserChange c where c.changedAt < :before "
+            + "and c.seq < (select max(last.seq) from UserChange last)")
+    int deletePublishedBefore(@Param("before") Instant before);
+}
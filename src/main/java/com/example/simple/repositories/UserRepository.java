@@ -1,20 +1,103 @@
 package com.example.simple.repositories;
 
 import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
+    /*
+    Emails are matched regardless of case through the indexed email_lower column,
+    methods taking a collection expect the emails already passed through lowerCase
+     */
+    static String lowerCase(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    @Query("select count(u) > 0 from User u where u.emailLower = lower(:email)")
     boolean existsByEmail(String email);
 
+    @Query("select u.emailLower from User u where u.emailLower in :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    /*
+    Rows are fetched in batches while the stream is consumed, it has to be closed
+    inside the transaction that opened it
+     */
+    @Query("select u.emailLower from User u")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllEmails();
+
+    @Query("select u from User u where u.emailLower = lower(:email)")
     Optional<User> findByEmail(String email);
 
-    void deleteByEmail(String email);
+    @Query("select u.emailLower from User u where u.id in :ids")
+    List<String> findEmailsByIdIn(Collection<Long> ids);
+
+    /*
+    Deletes are issued as single statements: derived delete methods and deleteById
+    select every entity first and then remove it one by one
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from User u where u.emailLower = lower(:email)")
+    int deleteByEmail(String email);
+
+    @Transactional
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIdIn(Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from User u where u.emailLower in :emails")
+    int deleteByEmailIn(Collection<String> emails);
+
+    Optional<UserView> findViewById(Long id);
+
+    List<UserView> findViewsByIdIn(Collection<Long> ids);
+
+    @Query("""
+            select new com.example.simple.model.UserView(
+                u.id, u.version, u.email, u.firstName, u.lastName, u.birthDate, u.address, u.phoneNumber)
+            from User u
+            """)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<UserView> streamAllViews();
+
+    List<UserView> findByBirthDateBetween(LocalDate from, LocalDate to);
+
+    /*
+    Keyset pagination over (birthDate, id): only the page size is passed via Pageable,
+    the position is carried by the last seen row, so no OFFSET scan is needed for deep pages
+     */
+    List<UserView> findByBirthDateBetweenOrderByBirthDateAscIdAsc(LocalDate from, LocalDate to, Pageable pageable);
 
-    List<User> findByBirthDateBetween(LocalDate from, LocalDate to);
+    @Query("""
+            select new com.example.simple.model.UserView(
+                u.id, u.version, u.email, u.firstName, u.lastName, u.birthDate, u.address, u.phoneNumber)
+            from User u
+            where u.birthDate between :from and :to
+              and (u.birthDate > :afterBirthDate or (u.birthDate = :afterBirthDate and u.id > :afterId))
+            order by u.birthDate, u.id
+            """)
+    List<UserView> findByBirthDateBetweenAfter(LocalDate from, LocalDate to,
+                                               LocalDate afterBirthDate, Long afterId,
+                                               Pageable pageable);
 
 }
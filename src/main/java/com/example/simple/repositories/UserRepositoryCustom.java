@@ -0,0 +1,29 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Writes the non-null fields of {@code changes} to the user with the given id
+     * in a single UPDATE statement, without loading the user first.
+     *
+     * @param expectedVersions when not null, the update only applies if the user still has one of these versions
+     * @return number of updated rows, 0 if the user does not exist or its version differs
+     */
+    int updateNonNullFields(Long id, User changes, Collection<Long> expectedVersions);
+
+    /**
+     * Selects the views of the matching users in one query, without hydrating entities.
+     *
+     * @param limit maximum number of rows returned
+     */
+    List<UserView> search(Specification<User> specification, Sort sort, int limit);
+
+}
@@ -0,0 +1,76 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    @Transactional
+    public int updateNonNullFields(Long id, User changes, Collection<Long> expectedVersions) {
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            return 0;
+        }
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaUpdate<User> update = cb.createCriteriaUpdate(User.class);
+        Root<User> user = update.from(User.class);
+
+        setIfPresent(update, user, "password", changes.getPassword());
+        setIfPresent(update, user, "firstName", changes.getFirstName());
+        setIfPresent(update, user, "lastName", changes.getLastName());
+        setIfPresent(update, user, "birthDate", changes.getBirthDate());
+        setIfPresent(update, user, "address", changes.getAddress());
+        setIfPresent(update, user, "phoneNumber", changes.getPhoneNumber());
+        update.set(user.<Long>get("version"), cb.sum(user.get("version"), 1L));
+
+        Predicate where = cb.equal(user.get("id"), id);
+        if (expectedVersions != null) {
+            where = cb.and(where, user.get("version").in(expectedVersions));
+        }
+        update.where(where);
+
+        return em.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public List<UserView> search(Specification<User> specification, Sort sort, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<UserView> query = cb.createQuery(UserView.class);
+        Root<User> user = query.from(User.class);
+
+        query.select(cb.construct(UserView.class,
+                user.get("id"), user.get("version"), user.get("email"), user.get("firstName"),
+                user.get("lastName"), user.get("birthDate"), user.get("address"), user.get("phoneNumber")));
+        Predicate where = specification.toPredicate(user, query, cb);
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, user, cb));
+
+        return em.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    private static <T> void setIfPresent(CriteriaUpdate<User> update, Root<User> user, String attribute, T value) {
+        if (value != null) {
+            update.set(user.<T>get(attribute), value);
+        }
+    }
+}
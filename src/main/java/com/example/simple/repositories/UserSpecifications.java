@@ -0,0 +1,95 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserSearch;
+import com.example.simple.securiry.Role;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Predicates of the user search. Each returns null for a missing filter, which
+ * {@link Specification#where} and {@link Specification#and} skip, so a search compiles into
+ * one WHERE clause with only the filters it was given.
+ * <p>
+ * Prefixes are matched with LIKE on the lower-cased columns: a pattern with a constant prefix
+ * is a range scan of the index on that column, a function applied to the column would not be.
+ */
+public final class UserSpecifications {
+
+    private static final char ESCAPE = '\\';
+
+    private UserSpecifications() {
+    }
+
+    public static Specification<User> matching(UserSearch search) {
+        return Specification.where(emailStartsWith(search.email()))
+                .and(lastNameStartsWith(search.lastName()))
+                .and(firstNameStartsWith(search.firstName()))
+                .and(bornBetween(search.from(), search.to()))
+                .and(hasRole(search.role()))
+                .and(isEnabled(search.enabled()));
+    }
+
+    public static Specification<User> emailStartsWith(String prefix) {
+        return startsWith("emailLower", prefix);
+    }
+
+    public static Specification<User> lastNameStartsWith(String prefix) {
+        return startsWith("lastNameLower", prefix);
+    }
+
+    // not indexed, only filters the rows found through another filter
+    public static Specification<User> firstNameStartsWith(String prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        return (user, query, cb) -> cb.like(cb.lower(user.get("firstName")), pattern(prefix), ESCAPE);
+    }
+
+    public static Specification<User> bornBetween(LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return null;
+        }
+        if (to == null) {
+            return (user, query, cb) -> cb.greaterThanOrEqualTo(user.get("birthDate"), from);
+        }
+        if (from == null) {
+            return (user, query, cb) -> cb.lessThanOrEqualTo(user.get("birthDate"), to);
+        }
+        return (user, query, cb) -> cb.between(user.get("birthDate"), from, to);
+    }
+
+    public static Specification<User> hasRole(Role role) {
+        if (role == null) {
+            return null;
+        }
+        return (user, query, cb) -> cb.equal(user.get("role"), role);
+    }
+
+    public static Specification<User> isEnabled(Boolean enabled) {
+        if (enabled == null) {
+            return null;
+        }
+        return (user, query, cb) -> cb.equal(user.get("enabled"), enabled);
+    }
+
+    private static Specification<User> startsWith(String attribute, String prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        return (user, query, cb) -> cb.like(user.get(attribute), pattern(prefix), ESCAPE);
+    }
+
+    private static String pattern(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 2);
+        for (char c : prefix.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                pattern.append(ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+}
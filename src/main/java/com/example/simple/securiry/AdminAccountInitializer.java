@@ -0,0 +1,59 @@
+package com.example.simple.securiry;
+
+import com.example.simple.model.User;
+import com.example.simple.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+/**
+ * Registers the configured admin account if it is missing,
+ * otherwise nobody could authenticate to create the first users.
+ * Only the default profile ships a password; elsewhere {@code user.admin.password} has to be set explicitly,
+ * without it the account is not created.
+ */
+@Component
+@ConditionalOnProperty("user.admin.email")
+public class AdminAccountInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminAccountInitializer.class);
+
+    @Value("${user.admin.email}")
+    private String email;
+
+    @Value("${user.admin.password:}")
+    private String password;
+
+    private final UserRepository repo;
+
+    private final PasswordEncoder encoder;
+
+    @Autowired
+    public AdminAccountInitializer(UserRepository repo, PasswordEncoder encoder) {
+        this.repo = repo;
+        this.encoder = encoder;
+    }
+
+    // one read-write transaction, so the check reads the primary and not a lagging replica
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        if (repo.existsByEmail(email)) {
+            return;
+        }
+        if (password.isBlank()) {
+            log.warn("Admin account {} is missing and user.admin.password is not set, it is not created", email);
+        } else {
+            repo.save(new User(email, encoder.encode(password), Role.ADMIN, "Admin", "Admin", LocalDate.EPOCH));
+        }
+    }
+}
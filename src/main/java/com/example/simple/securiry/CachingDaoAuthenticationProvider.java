@@ -0,0 +1,144 @@
+package com.example.simple.securiry;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.events.UsersDeletedEvent;
+import com.example.simple.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP Basic sends credentials with every request, and bcrypt makes verifying them the most
+ * expensive part of a call. Successful verifications are remembered for a short time under
+ * an HMAC of username and password, keyed with a random per-instance secret, so neither
+ * the plain password nor an offline-checkable digest of it is kept in memory.
+ * <p>
+ * A remembered verification only counts while the stored hash is still the one it was made against,
+ * so a password change invalidates it even before {@link UserChangedEvent} evicts the entry.
+ */
+@Component
+public class CachingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Mac prototype;
+
+    private final Cache<String, Verification> verified;
+
+    // password hash checks that actually ran, cache hits are reported by the cache metrics
+    private final Counter passwordMatches;
+
+    private final Counter passwordMismatches;
+
+    @Autowired
+    public CachingDaoAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder encoder,
+                                            @Value("${user.security.credentialCache.maxSize:10000}") long maxSize,
+                                            @Value("${user.security.credentialCache.ttl:1m}") Duration ttl,
+                                            MeterRegistry meterRegistry)
+            throws GeneralSecurityException {
+        super(encoder);
+        setUserDetailsService(userDetailsService);
+
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        prototype = Mac.getInstance(HMAC_ALGORITHM);
+        prototype.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+
+        verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "users.credentials");
+
+        passwordMatches = meterRegistry.counter("user.security.password.verifications", "result", "match");
+        passwordMismatches = meterRegistry.counter("user.security.password.verifications", "result", "mismatch");
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        if (authentication.getCredentials() == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+
+        String key = key(userDetails.getUsername(), authentication.getCredentials().toString());
+        Verification verification = verified.getIfPresent(key);
+        if (verification != null && verification.matches(userDetails.getPassword())) {
+            return;
+        }
+
+        try {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+        } catch (BadCredentialsException ex) {
+            passwordMismatches.increment();
+            throw ex;
+        }
+        passwordMatches.increment();
+        Long userId = userDetails instanceof UserDetailsImpl details ? details.getUser().getId() : null;
+        verified.put(key, new Verification(userDetails.getUsername(), userId, userDetails.getPassword()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void evict(UserChangedEvent event) {
+        verified.asMap().values().removeIf(verification ->
+                verification.username().equalsIgnoreCase(event.email())
+                        || (event.id() != null && event.id().equals(verification.userId())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void evict(UsersDeletedEvent event) {
+        Set<Long> ids = Set.copyOf(event.ids());
+        Set<String> emails = event.emails().stream().map(UserRepository::lowerCase).collect(Collectors.toSet());
+        verified.asMap().values().removeIf(verification ->
+                emails.contains(UserRepository.lowerCase(verification.username()))
+                        || (verification.userId() != null && ids.contains(verification.userId())));
+    }
+
+    private String key(String username, String password) {
+        Mac mac;
+        try {
+            mac = (Mac) prototype.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " implementation is not cloneable", ex);
+        }
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private record Verification(String username, Long userId, String passwordHash) {
+
+        boolean matches(String currentPasswordHash) {
+            return MessageDigest.isEqual(
+                    passwordHash.getBytes(StandardCharsets.UTF_8),
+                    currentPasswordHash.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.simple.securiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control: at most {@code maxConcurrent} API requests are processed at once, a request that finds
+ * no free slot within {@code timeout} is answered 503 with Retry-After. Shedding at the door keeps the
+ * latency of admitted requests bounded instead of letting everyone queue for the connection pool.
+ * Streamed responses hold their slot until the async processing completes. Actuator endpoints and the long poll
+ * of {@code /users/changes} are not limited.
+ * <p>
+ * Meters: {@code user.admission.rejections} and the {@code user.admission.inflight} gauge.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+
+    private final long timeoutNanos;
+
+    private final Counter rejections;
+
+    public ConcurrencyLimitFilter(int maxConcurrent, Duration timeout, MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeoutNanos = timeout.toNanos();
+        this.rejections = meterRegistry.counter("user.admission.rejections");
+        meterRegistry.gauge("user.admission.inflight", permits, p -> maxConcurrent - p.availablePermits());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // a waiting long poll holds no thread and no connection, UserChangeFeed bounds their number itself
+        return path.startsWith("/actuator") || path.equals("/users/changes");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            rejections.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"data\":\"Server is busy, retry later\"}");
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        release(released);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        release(released);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        release(released);
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                release(released);
+            }
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void release(AtomicBoolean released) {
+        if (released.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+}
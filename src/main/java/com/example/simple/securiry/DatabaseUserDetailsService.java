@@ -0,0 +1,77 @@
+package com.example.simple.securiry;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.events.UsersDeletedEvent;
+import com.example.simple.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Resolves principals from the users table.
+ * Resolved principals are kept in a bounded cache with a TTL, so authenticated requests
+ * do not query the table again, entries of changed users are dropped on {@link UserChangedEvent} and {@link UsersDeletedEvent}.
+ * Writes publish the email of the user: only evicting by key waits for a load of the same principal in flight,
+ * scanning the cached values by id cannot see it.
+ */
+@Service
+public class DatabaseUserDetailsService implements UserDetailsService {
+
+    private final UserRepository repo;
+
+    private final Cache<String, UserDetailsImpl> cache;
+
+    @Autowired
+    public DatabaseUserDetailsService(UserRepository repo,
+                                      @Value("${user.security.principalCache.maxSize:10000}") long maxSize,
+                                      @Value("${user.security.principalCache.ttl:5m}") Duration ttl,
+                                      MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.principals");
+    }
+
+    @Override
+    public UserDetailsImpl loadUserByUsername(String username) throws UsernameNotFoundException {
+        // absent users are not cached, Caffeine does not store null values;
+        // emails are matched regardless of case, so are cache keys
+        UserDetailsImpl details = cache.get(UserRepository.lowerCase(username),
+                email -> repo.findByEmail(email).map(UserDetailsImpl::new).orElse(null));
+        if (details == null) {
+            throw new UsernameNotFoundException("User " + username + " is not registered");
+        }
+        return details;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void evict(UserChangedEvent event) {
+        if (event.email() != null) {
+            cache.invalidate(UserRepository.lowerCase(event.email()));
+        } else if (event.id() != null) {
+            cache.asMap().values().removeIf(details -> event.id().equals(details.getUser().getId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void evict(UsersDeletedEvent event) {
+        cache.invalidateAll(event.emails().stream().map(UserRepository::lowerCase).toList());
+        if (!event.ids().isEmpty()) {
+            Set<Long> ids = Set.copyOf(event.ids());
+            cache.asMap().values().removeIf(details -> ids.contains(details.getUser().getId()));
+        }
+    }
+}
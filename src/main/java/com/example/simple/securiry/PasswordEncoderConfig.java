@@ -0,0 +1,18 @@
+package com.example.simple.securiry;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Shared by the servlet and the reactive security configuration.
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    @Bean
+    PasswordEncoder passwordEncoder() {
+        return PasswordEncoderFactories.createDelegatingPasswordEncoder(); // bcrypt is used by default
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.simple.securiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Answers 429 with Retry-After once a client has used up the token bucket of the first rule
+ * matching the request. Rejections are counted as {@code user.ratelimit.rejections}, tagged with the rule.
+ * <p>
+ * Two instances run in the security filter chain: one before authentication, keyed by client address,
+ * so password guessing is throttled before bcrypt runs, and one after it, keyed by the authenticated user.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final String name;
+
+    private final List<Limit> limits;
+
+    private final TokenBuckets buckets;
+
+    private final Function<HttpServletRequest, String> keys;
+
+    private RateLimitFilter(String name, List<Limit> limits, TokenBuckets buckets,
+                            Function<HttpServletRequest, String> keys) {
+        this.name = name;
+        this.limits = limits;
+        this.buckets = buckets;
+        this.keys = keys;
+    }
+
+    /**
+     * Limits requests carrying credentials per client address.
+     */
+    public static RateLimitFilter authentication(RateLimitProperties.Rule rule, TokenBuckets buckets,
+                                                 MeterRegistry meterRegistry) {
+        Limit limit = new Limit("authentication", rule, meterRegistry) {
+            @Override
+            boolean matches(HttpServletRequest request, PathContainer path) {
+                return request.getHeader(HttpHeaders.AUTHORIZATION) != null;
+            }
+        };
+        return new RateLimitFilter("authentication", List.of(limit), buckets, HttpServletRequest::getRemoteAddr);
+    }
+
+    /**
+     * Limits requests per endpoint and authenticated user, anonymous requests per client address.
+     */
+    public static RateLimitFilter endpoints(List<RateLimitProperties.Rule> rules, TokenBuckets buckets,
+                                            MeterRegistry meterRegistry) {
+        List<Limit> limits = rules.stream()
+                .map(rule -> new Limit((rule.method() == null ? "*" : rule.method().name()) + " " + rule.pattern(),
+                        rule, meterRegistry))
+                .toList();
+        return new RateLimitFilter("endpoints", limits, buckets, RateLimitFilter::principalOrAddress);
+    }
+
+    @Override
+    protected String getAlreadyFilteredAttributeName() {
+        // both instances share the class, the default name would let only the first one run
+        return RateLimitFilter.class.getName() + "." + name + ".FILTERED";
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (Limit limit : limits) {
+            if (limit.matches(request, path)) {
+                long wait = buckets.tryAcquire(limit.id + "|" + keys.apply(request), limit.intervalNanos, limit.burst);
+                if (wait > 0) {
+                    limit.rejections.increment();
+                    reject(response, wait);
+                    return;
+                }
+                break;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"data\":\"Too many requests, retry in " + seconds + " s\"}");
+    }
+
+    private static String principalOrAddress(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "address:" + request.getRemoteAddr();
+    }
+
+    private static class Limit {
+
+        private final String id;
+
+        private final HttpMethod method;
+
+        private final PathPattern pattern;
+
+        private final long intervalNanos;
+
+        private final int burst;
+
+        private final Counter rejections;
+
+        Limit(String id, RateLimitProperties.Rule rule, MeterRegistry meterRegistry) {
+            if (!(rule.permitsPerSecond() > 0) || rule.burst() < 1) {
+                throw new IllegalArgumentException("Rate limit " + id + " needs a positive rate and burst");
+            }
+            this.id = id;
+            this.method = rule.method();
+            this.pattern = rule.pattern() == null ? null : PathPatternParser.defaultInstance.parse(rule.pattern());
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rule.permitsPerSecond());
+            this.burst = rule.burst();
+            this.rejections = meterRegistry.counter("user.ratelimit.rejections", "rule", id);
+        }
+
+        boolean matches(HttpServletRequest request, PathContainer path) {
+            return (method == null || method.matches(request.getMethod()))
+                    && (pattern == null || pattern.matches(path));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.simple.securiry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.http.HttpMethod;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token bucket limits of {@link RateLimitFilter}, bound from {@code user.rateLimit}.
+ *
+ * @param maxKeys        clients (users or addresses) tracked at once, the least recently seen are forgotten
+ * @param keyTtl         idle time after which a client starts again with a full bucket
+ * @param authentication limit of requests carrying credentials per client address, checked before the password
+ * @param rules          limits per endpoint and authenticated user, or client address for anonymous requests;
+ *                       the first matching rule applies
+ */
+@ConfigurationProperties("user.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maxKeys,
+        @DefaultValue("10m") Duration keyTtl,
+        Rule authentication,
+        @DefaultValue List<Rule> rules) {
+
+    /**
+     * @param method           null for any method
+     * @param pattern          path pattern, e.g. {@code /users/{id}} or {@code /users/**}
+     * @param permitsPerSecond sustained rate
+     * @param burst            requests accepted at once after the client has been idle
+     */
+    public record Rule(HttpMethod method, String pattern, double permitsPerSecond, @DefaultValue("1") int burst) {
+    }
+}
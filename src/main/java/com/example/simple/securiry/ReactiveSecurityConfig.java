@@ -0,0 +1,44 @@
+package com.example.simple.securiry;
+
+import com.example.simple.repositories.ReactiveUserRepository;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * Same rules as {@link SecurityConfig} for the routes of the reactive profile.
+ * Passwords are checked on the bounded elastic scheduler by Spring Security, never on the event loop.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+
+    @Bean
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(Customizer.withDefaults())
+                .authorizeExchange(c -> c
+                        .matchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .matchers(EndpointRequest.toAnyEndpoint()).hasRole(Role.ADMIN.name())
+                        .pathMatchers(HttpMethod.POST, "/users").hasRole(Role.ADMIN.name())
+                        .pathMatchers(HttpMethod.GET, "/users", "/users/{id}").permitAll()
+                        .anyExchange().denyAll()
+                )
+                .build();
+    }
+
+    @Bean
+    ReactiveUserDetailsService reactiveUserDetailsService(ReactiveUserRepository repo) {
+        return email -> repo.findByEmail(email).map(UserDetailsImpl::new);
+    }
+}
@@ -1,67 +1,93 @@
 package com.example.simple.securiry;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.ObjectPostProcessor;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.factory.PasswordEncoderFactories;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.header.HeaderWriterFilter;
 import org.springframework.security.web.servlet.util.matcher.MvcRequestMatcher;
 import org.springframework.web.servlet.handler.HandlerMappingIntrospector;
 
+import java.time.Duration;
+
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableWebSecurity
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfig {
 
     @Bean
-    UserDetailsService userDetailsService(PasswordEncoder encoder) {
-        var manager = new InMemoryUserDetailsManager();
-
-        UserDetails user1 = User.withUsername("a")
-                .password(encoder.encode("a"))
-                .roles(Role.ADMIN.name(), Role.BASIC.name())
-                .build();
-        manager.createUser(user1);
-
-        UserDetails user2 = User.withUsername("b")
-                .password(encoder.encode("b"))
-                .roles(Role.BASIC.name())
-                .build();
-        manager.createUser(user2);
-
-        return manager;
-    }
-
-    @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity, HandlerMappingIntrospector introspector) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity, HandlerMappingIntrospector introspector,
+                                            RateLimitProperties rateLimits,
+                                            @Value("${user.admission.maxConcurrent:64}") int maxConcurrent,
+                                            @Value("${user.admission.timeout:100ms}") Duration admissionTimeout,
+                                            MeterRegistry meterRegistry) throws Exception {
         var mvcMatcher = new MvcRequestMatcher.Builder(introspector);
+        if (rateLimits.enabled()) {
+            TokenBuckets buckets = new TokenBuckets(rateLimits.maxKeys(), rateLimits.keyTtl(), System::nanoTime);
+            meterRegistry.gauge("user.ratelimit.keys", buckets, TokenBuckets::size);
+            if (rateLimits.authentication() != null) {
+                httpSecurity.addFilterBefore(
+                        RateLimitFilter.authentication(rateLimits.authentication(), buckets, meterRegistry),
+                        BasicAuthenticationFilter.class);
+            }
+            httpSecurity.addFilterBefore(
+                    RateLimitFilter.endpoints(rateLimits.rules(), buckets, meterRegistry), AuthorizationFilter.class);
+        }
+        // registered last, so it comes after the rate limits: rejected requests never take a slot
+        httpSecurity.addFilterBefore(
+                new ConcurrencyLimitFilter(maxConcurrent, admissionTimeout, meterRegistry), AuthorizationFilter.class);
         return httpSecurity
                 .csrf(AbstractHttpConfigurer::disable)
+                .headers(c -> c.addObjectPostProcessor(writeHeadersEagerly()))
                 .httpBasic(Customizer.withDefaults())
                 .passwordManagement(c -> c
                         .changePasswordPage("/profile/change-password")
                 )
                 .authorizeHttpRequests(c -> c
+                        // Prometheus scrapes with HTTP Basic, the credential cache keeps that cheap
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole(Role.ADMIN.name())
 //                        .requestMatchers(HttpMethod.POST, "/users").hasRole(Role.ADMIN.name())
                         .requestMatchers(mvcMatcher.pattern(HttpMethod.POST, "/users")).hasRole(Role.ADMIN.name())
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.POST, "/users/bulk")).hasRole(Role.ADMIN.name())
                         .requestMatchers(mvcMatcher.pattern(HttpMethod.GET, "/users")).permitAll()
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.GET, "/users/search")).authenticated()
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.GET, "/users/changes")).authenticated()
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.POST, "/users/search/rebuild")).hasRole(Role.ADMIN.name())
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.GET, "/users/{id}")).permitAll()
                         .requestMatchers(mvcMatcher.pattern(HttpMethod.DELETE, "/users/{id}")).hasRole(Role.ADMIN.name())
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.DELETE, "/users")).hasRole(Role.ADMIN.name())
+                        .requestMatchers(mvcMatcher.pattern(HttpMethod.GET, "/users/delete-jobs/{jobId}")).hasRole(Role.ADMIN.name())
                         .requestMatchers(mvcMatcher.pattern(HttpMethod.PATCH, "/users/{id}")).authenticated()
                 )
                 .build();
     }
 
-    @Bean
-    PasswordEncoder passwordEncoder() {
-        return PasswordEncoderFactories.createDelegatingPasswordEncoder(); // bcrypt is used by default
+    /*
+    GET /users?stream=true writes its body from an async thread once the chain has returned;
+    security headers added after the chain would race with that write, so they are written before it
+     */
+    private static ObjectPostProcessor<HeaderWriterFilter> writeHeadersEagerly() {
+        return new ObjectPostProcessor<>() {
+            @Override
+            public <O extends HeaderWriterFilter> O postProcess(O filter) {
+                filter.setShouldWriteHeadersEagerly(true);
+                return filter;
+            }
+        };
     }
-
 }
@@ -0,0 +1,56 @@
+package com.example.simple.securiry;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets in their GCRA form: a bucket is a single theoretical arrival time per key,
+ * updated with compare-and-set, so checks never lock and a bucket costs one AtomicLong.
+ * Keys are held in a bounded cache, a forgotten key starts again with a full bucket.
+ */
+public class TokenBuckets {
+
+    private final Cache<String, AtomicLong> arrivals;
+
+    private final LongSupplier nanoTime;
+
+    public TokenBuckets(long maxKeys, Duration keyTtl, LongSupplier nanoTime) {
+        this.arrivals = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(keyTtl)
+                .build();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}.
+     *
+     * @param intervalNanos  time to earn one token back, the inverse of the rate
+     * @param burst          capacity of the bucket
+     * @return 0 if a token was taken, otherwise the nanos until one is available
+     */
+    public long tryAcquire(String key, long intervalNanos, int burst) {
+        long tolerance = intervalNanos * (burst - 1);
+        AtomicLong arrival = arrivals.get(key, k -> new AtomicLong(nanoTime.getAsLong()));
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long theoretical = arrival.get();
+            long wait = theoretical - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            long next = Math.max(theoretical - now, 0) + now + intervalNanos;
+            if (arrival.compareAndSet(theoretical, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long size() {
+        return arrivals.estimatedSize();
+    }
+}
@@ -19,7 +19,7 @@ public class UserDetailsImpl implements UserDetails {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(user.getRole());
+        return user.getRole() == null ? List.of() : List.of(user.getRole());
     }
 
     @Override
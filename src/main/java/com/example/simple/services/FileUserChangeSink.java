@@ -0,0 +1,61 @@
+package com.example.simple.services;
+
+import com.example.simple.model.UserChangeView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends published changes to {@code user.changes.file} as NDJSON, one change per line.
+ * Every batch is forced to disk before the relay commits it, so a line may be repeated after a crash but never lost.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "user.changes.sink", havingValue = "file")
+public class FileUserChangeSink implements UserChangeSink, DisposableBean {
+
+    private final FileChannel file;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public FileUserChangeSink(@Value("${user.changes.file}") Path path, ObjectMapper objectMapper) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void publish(List<UserChangeView> changes) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(changes.size() * 100);
+        for (UserChangeView change : changes) {
+            lines.write(objectMapper.writeValueAsBytes(change));
+            lines.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            file.write(buffer);
+        }
+        file.force(false);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.simple.services;
+
+import com.example.simple.model.UserChangeView;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Default sink: changes are only numbered for the {@code GET /users/changes} feed.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "user.changes.sink", havingValue = "none", matchIfMissing = true)
+public class NoUserChangeSink implements UserChangeSink {
+
+    @Override
+    public void publish(List<UserChangeView> changes) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.simple.services;
+
+import com.example.simple.model.UserChangeView;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-process queue of published changes for consumers in this application.
+ * A batch that does not fit fails as a whole, so a stalled consumer holds the relay back instead of losing changes.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "user.changes.sink", havingValue = "queue")
+public class QueueUserChangeSink implements UserChangeSink {
+
+    private final BlockingQueue<UserChangeView> queue;
+
+    @Autowired
+    public QueueUserChangeSink(@Value("${user.changes.queueCapacity:10000}") int capacity, MeterRegistry meterRegistry) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        meterRegistry.gauge("user.changes.queue.size", queue, BlockingQueue::size);
+    }
+
+    @Override
+    public synchronized void publish(List<UserChangeView> changes) {
+        // synchronized: the capacity check and the adds are one step for concurrent publishers
+        if (queue.remainingCapacity() < changes.size()) {
+            throw new IllegalStateException("User change queue is full, " + queue.size() + " changes are not consumed yet");
+        }
+        queue.addAll(changes);
+    }
+
+    public UserChangeView poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    public int drainTo(Collection<? super UserChangeView> changes, int max) {
+        return queue.drainTo(changes, max);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.simple.services;
+
+import com.example.simple.repositories.UserRepository;
+import com.example.simple.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * In-memory Bloom filter of the registered emails, consulted before the email checks of bulk imports.
+ * A miss is definite and saves the query, a hit may be false and is confirmed by the query.
+ * <p>
+ * The unique index on email_lower stays the source of truth: an email this instance has not seen,
+ * inserted by another instance or committed while a rebuild was starting, fails the insert instead of the check.
+ * <p>
+ * The filter is built by streaming the users table once the application is ready, until then
+ * every email counts as possibly registered. A Bloom filter cannot forget, deleted emails stay false positives
+ * until the next rebuild, which runs when deletes or growth push the estimated false positive rate past twice the target.
+ */
+@Component
+public class RegisteredEmails implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RegisteredEmails.class);
+
+    private final UserRepository repo;
+
+    private final TransactionTemplate transactions;
+
+    private final long expectedInsertions;
+
+    private final double fpp;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final AtomicLong removedSinceBuild = new AtomicLong();
+
+    private final AtomicLong registeredAtBuild = new AtomicLong();
+
+    private final Counter misses;
+
+    private final Counter hits;
+
+    // null until the first build completes
+    private volatile BloomFilter filter;
+
+    // receives every email recorded while a rebuild streams the table
+    private volatile BloomFilter next;
+
+    @Autowired
+    public RegisteredEmails(UserRepository repo, TransactionTemplate transactions,
+                            @Value("${user.emailFilter.expectedInsertions:1000000}") long expectedInsertions,
+                            @Value("${user.emailFilter.fpp:0.01}") double fpp,
+                            MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.transactions = transactions;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("email-filter-");
+        executor.initialize();
+
+        misses = meterRegistry.counter("user.emails.filter.checks", "result", "miss");
+        hits = meterRegistry.counter("user.emails.filter.checks", "result", "maybe");
+        // before the first build every check is a possible hit
+        meterRegistry.gauge("user.emails.filter.fpp", this, emails -> emails.filter == null ? 1 : emails.filter.expectedFpp());
+        meterRegistry.gauge("user.emails.filter.bytes", this, RegisteredEmails::sizeInBytes);
+    }
+
+    /**
+     * @return false only if no user has this email, true if one may have it
+     */
+    public boolean mightBeRegistered(String email) {
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(UserRepository.lowerCase(email))) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Called before the insert of a user with this email, a rolled back insert only leaves a false positive.
+     */
+    public void registered(String email) {
+        String emailLower = UserRepository.lowerCase(email);
+        // read next first: a rebuild publishes its filter before it clears next, so one of the two is the new filter
+        BloomFilter pending = next;
+        BloomFilter current = filter;
+        if (pending != null) {
+            pending.put(emailLower);
+        }
+        if (current != null) {
+            current.put(emailLower);
+            if (current.expectedFpp() > 2 * fpp) {
+                rebuildAsync();
+            }
+        }
+    }
+
+    public void removed(int count) {
+        // deleted emails keep their bits: once they are a sizeable share of the filter, rebuild it without them
+        if (count > 0 && removedSinceBuild.addAndGet(count) > registeredAtBuild.get() / 4) {
+            rebuildAsync();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void buildOnStartup() {
+        rebuildAsync();
+    }
+
+    public void rebuildAsync() {
+        if (rebuilding.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::rebuild);
+            } catch (TaskRejectedException ex) {
+                // shutting down
+                rebuilding.set(false);
+            }
+        }
+    }
+
+    private void rebuild() {
+        try {
+            // read-write, so the table is read on the primary and not on a lagging replica
+            long count = transactions.execute(status -> {
+                long registered = repo.count();
+                BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, 2 * registered), fpp);
+                next = rebuilt;
+                removedSinceBuild.set(0);
+                try (Stream<String> emails = repo.streamAllEmails()) {
+                    emails.forEach(rebuilt::put);
+                }
+                return registered;
+            });
+            filter = next;
+            next = null;
+            registeredAtBuild.set(count);
+        } catch (RuntimeException ex) {
+            next = null;
+            log.warn("Could not build the registered email filter, emails are checked in the database", ex);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private double sizeInBytes() {
+        BloomFilter current = filter;
+        BloomFilter pending = next;
+        return ((current == null ? 0 : current.bitSize()) + (pending == null ? 0 : pending.bitSize())) / 8.0;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
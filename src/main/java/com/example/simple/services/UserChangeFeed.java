@@ -0,0 +1,110 @@
+package com.example.simple.services;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.UserChangeView;
+import com.example.simple.repositories.UserChangeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Long poll of the published user changes behind {@code GET /users/changes}.
+ * <p>
+ * A request finding no change after its {@code since} waits, without a thread or a connection, for the next batch
+ * {@link UserChangeRelay} publishes, and is answered from that batch without another query.
+ * At most {@code user.changes.maxWaiting} requests wait at once, the others are answered with an empty list right away.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserChangeFeed {
+
+    private final UserChangeRepository repo;
+
+    private final TransactionTemplate transactions;
+
+    private final long timeoutMillis;
+
+    private final int maxWaiting;
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public UserChangeFeed(UserChangeRepository repo, TransactionTemplate transactions,
+                          @Value("${user.changes.longPollTimeout:25s}") Duration timeout,
+                          @Value("${user.changes.maxWaiting:1000}") int maxWaiting,
+                          MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.transactions = transactions;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxWaiting = maxWaiting;
+
+        meterRegistry.gauge("user.changes.waiting", waiters, Set::size);
+    }
+
+    /**
+     * @return up to {@code limit} changes following {@code since}, an empty list if none was published before the timeout
+     * @throws FieldException if changes following {@code since} were already deleted
+     */
+    public DeferredResult<List<UserChangeView>> changesAfter(long since, int limit) {
+        DeferredResult<List<UserChangeView>> result = new DeferredResult<>(timeoutMillis, List.of());
+        Waiter waiter = new Waiter(since, limit, result);
+        // registered before reading: a batch published in between completes it, it is not missed
+        boolean waiting = waiters.size() < maxWaiting && waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+
+        List<UserChangeView> changes;
+        try {
+            changes = read(since, limit);
+        } catch (RuntimeException ex) {
+            waiters.remove(waiter);
+            throw ex;
+        }
+        if (!changes.isEmpty() || !waiting) {
+            result.setResult(changes);
+        }
+        return result;
+    }
+
+    /**
+     * Called by the relay once {@code batch} is committed.
+     */
+    void published(List<UserChangeView> batch) {
+        long first = batch.get(0).seq();
+        for (Waiter waiter : waiters) {
+            // a waiter further behind is still reading, and will find the batch itself
+            if (waiter.since() + 1 < first) {
+                continue;
+            }
+            List<UserChangeView> newer = batch.stream()
+                    .filter(change -> change.seq() > waiter.since())
+                    .limit(waiter.limit())
+                    .toList();
+            if (!newer.isEmpty() && waiter.result().setResult(newer)) {
+                waiters.remove(waiter);
+            }
+        }
+    }
+
+    private List<UserChangeView> read(long since, int limit) {
+        // read-write: woken by a commit on the primary, a replica may not have the batch yet
+        List<UserChangeView> changes = transactions.execute(status -> repo.findPublishedAfter(since, PageRequest.ofSize(limit)));
+        if (since > 0 && !changes.isEmpty() && changes.get(0).seq() != since + 1) {
+            throw new FieldException("since", "Changes after " + since + " are no longer retained, "
+                    + "read the users again and continue from since=0");
+        }
+        return changes;
+    }
+
+    private record Waiter(long since, int limit, DeferredResult<List<UserChangeView>> result) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.simple.services;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.events.UsersCreatedEvent;
+import com.example.simple.events.UsersDeletedEvent;
+import com.example.simple.model.UserChange;
+import com.example.simple.model.UserChangeView;
+import com.example.simple.repositories.UserChangeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the user_changes outbox written by {@link UserOutbox}.
+ * <p>
+ * A single worker takes the unpublished rows in batches of {@code user.changes.batchSize}: in one transaction
+ * it numbers them after the last published seq, hands them to the {@link UserChangeSink} and commits,
+ * then completes the requests waiting in {@link UserChangeFeed}. Numbering at publication keeps the feed gapless
+ * although transactions commit their rows in any order of their ids.
+ * <p>
+ * The worker wakes up on the commit of every mutation and at least every {@code user.changes.pollInterval},
+ * which also picks up rows left by a failed batch. Published rows older than {@code user.changes.retention}
+ * are deleted once an hour.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserChangeRelay implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeRelay.class);
+
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final UserChangeRepository repo;
+
+    private final UserChangeSink sink;
+
+    private final UserChangeFeed feed;
+
+    private final TransactionTemplate transactions;
+
+    private final Clock clock;
+
+    private final int batchSize;
+
+    private final long pollIntervalMillis;
+
+    private final Duration retention;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Timer batches;
+
+    private final Counter failures;
+
+    private volatile boolean running = true;
+
+    private long lastPrune = System.nanoTime() - PRUNE_INTERVAL_NANOS;
+
+    @Autowired
+    public UserChangeRelay(UserChangeRepository repo, UserChangeSink sink, UserChangeFeed feed,
+                           TransactionTemplate transactions, Clock clock,
+                           @Value("${user.changes.batchSize:500}") int batchSize,
+                           @Value("${user.changes.pollInterval:1s}") Duration pollInterval,
+                           @Value("${user.changes.retention:7d}") Duration retention,
+                           MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.sink = sink;
+        this.feed = feed;
+        this.transactions = transactions;
+        this.clock = clock;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.retention = retention;
+
+        batches = meterRegistry.timer("user.changes.relay.batches");
+        failures = meterRegistry.counter("user.changes.relay.failures");
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("user-change-relay-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(5);
+        executor.initialize();
+        executor.execute(this::run);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onCreated(UsersCreatedEvent event) {
+        wakeUps.release();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onChanged(UserChangedEvent event) {
+        wakeUps.release();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onDeleted(UsersDeletedEvent event) {
+        wakeUps.release();
+    }
+
+    private void run() {
+        boolean failed = false;
+        while (running) {
+            try {
+                if (failed) {
+                    // commits keep waking the worker, a failing sink would otherwise be retried at their rate
+                    Thread.sleep(pollIntervalMillis);
+                    failed = false;
+                }
+                wakeUps.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+                // a full batch means more rows are likely waiting
+                while (running && relayBatch() == batchSize) {
+                    Thread.yield();
+                }
+                if (System.nanoTime() - lastPrune >= PRUNE_INTERVAL_NANOS) {
+                    lastPrune = System.nanoTime();
+                    transactions.executeWithoutResult(status -> repo.deletePublishedBefore(clock.instant().minus(retention)));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                // the rows stay unpublished and are retried at the next wake-up
+                failures.increment();
+                failed = true;
+                log.warn("Could not relay user changes", ex);
+            }
+        }
+    }
+
+    private int relayBatch() {
+        List<UserChangeView> published = batches.record(() -> transactions.execute(status -> {
+            List<UserChange> batch = repo.findUnpublished(PageRequest.ofSize(batchSize));
+            if (batch.isEmpty()) {
+                return List.<UserChangeView>of();
+            }
+            long seq = repo.findLastSeq();
+            for (UserChange change : batch) {
+                change.setSeq(++seq);
+            }
+            List<UserChangeView> views = batch.stream().map(UserChange::toView).toList();
+            try {
+                sink.publish(views);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return views;
+        }));
+        if (!published.isEmpty()) {
+            feed.published(published);
+        }
+        return published.size();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        executor.shutdown();
+    }
+}
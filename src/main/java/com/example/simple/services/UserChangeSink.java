@@ -0,0 +1,21 @@
+package com.example.simple.services;
+
+import com.example.simple.model.UserChangeView;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where {@link UserChangeRelay} publishes user changes besides the {@code GET /users/changes} feed,
+ * selected with {@code user.changes.sink}: {@code none}, {@code queue} or {@code file}.
+ * <p>
+ * Delivery is at least once: a batch is published before the transaction numbering it commits,
+ * if that commit fails the rows are published again. Consumers deduplicate by user, type and time.
+ */
+public interface UserChangeSink {
+
+    /**
+     * @param changes consecutive by seq; throwing rolls the batch back, the relay retries it later
+     */
+    void publish(List<UserChangeView> changes) throws IOException;
+}
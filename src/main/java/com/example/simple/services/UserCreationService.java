@@ -0,0 +1,185 @@
+package com.example.simple.services;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import com.example.simple.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Creation of single users, safe to retry.
+ * <p>
+ * Requests for the same email are coalesced: while one is hashing the password and inserting, the others wait
+ * for its outcome instead of hashing and failing on the unique index themselves. A waiting request with the same
+ * payload gets the same user, one with a different payload finds the email already registered.
+ * <p>
+ * A request with an {@code Idempotency-Key} header also gets the user created by an earlier request with
+ * the same key and payload, for {@code user.idempotency.ttl} and up to {@code user.idempotency.maxSize} keys.
+ * Keys are scoped to the authenticated client; reusing one for another payload is refused.
+ * A key is reserved before the user is created, so a concurrent request with the same key waits for
+ * that outcome instead of creating a user of its own.
+ * Both only hold within one instance, the unique index on email_lower stays the guarantee across instances.
+ * <p>
+ * Meters: {@code user.creations.coalesced}, {@code user.creations.replayed} and the {@code users.idempotency} cache.
+ */
+@Service
+public class UserCreationService {
+
+    private final UserService userService;
+
+    private final PasswordEncoder encoder;
+
+    // digests of clear passwords stay in memory, salted so that a heap dump does not allow guessing them offline
+    private final byte[] salt = new byte[16];
+
+    private final ConcurrentMap<String, CompletableFuture<Created>> inFlight = new ConcurrentHashMap<>();
+
+    private final AsyncCache<String, Created> completed;
+
+    private final Counter coalesced;
+
+    private final Counter replayed;
+
+    @Autowired
+    public UserCreationService(UserService userService, PasswordEncoder encoder,
+                               @Value("${user.idempotency.maxSize:10000}") long maxSize,
+                               @Value("${user.idempotency.ttl:24h}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.encoder = encoder;
+        new SecureRandom().nextBytes(salt);
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "users.idempotency");
+        this.coalesced = meterRegistry.counter("user.creations.coalesced");
+        this.replayed = meterRegistry.counter("user.creations.replayed");
+    }
+
+    /**
+     * @param user           validated, with the password in clear
+     * @param client         name of the authenticated client
+     * @param idempotencyKey value of the Idempotency-Key header, null if absent
+     * @return id of the created user
+     * @throws FieldException if the email is already registered or the key was used for another payload
+     */
+    public Long create(User user, String client, String idempotencyKey) {
+        byte[] fingerprint = fingerprint(user);
+        if (idempotencyKey == null) {
+            return createOnce(user, fingerprint).idFor(fingerprint, () -> alreadyRegistered(user.getEmail()));
+        }
+
+        String key = client + '\n' + idempotencyKey;
+        ConcurrentMap<String, CompletableFuture<Created>> reserved = completed.asMap();
+        while (true) {
+            CompletableFuture<Created> mine = new CompletableFuture<>();
+            CompletableFuture<Created> earlier = reserved.putIfAbsent(key, mine);
+            if (earlier == null) {
+                try {
+                    Long id = createOnce(user, fingerprint).idFor(fingerprint, () -> alreadyRegistered(user.getEmail()));
+                    mine.complete(new Created(id, fingerprint));
+                    return id;
+                } catch (RuntimeException ex) {
+                    // failures are not replayed, the key is released before waiting requests see the outcome
+                    reserved.remove(key, mine);
+                    mine.completeExceptionally(ex);
+                    throw ex;
+                }
+            }
+
+            try {
+                Long id = earlier.join().idFor(fingerprint, () -> new FieldException(
+                        "Idempotency-Key", "Idempotency-Key " + idempotencyKey + " was used for another request"));
+                replayed.increment();
+                return id;
+            } catch (CompletionException ex) {
+                // the request holding the key failed, this one tries by itself
+            }
+        }
+    }
+
+    private Created createOnce(User user, byte[] fingerprint) {
+        String email = UserRepository.lowerCase(user.getEmail());
+        while (true) {
+            CompletableFuture<Created> mine = new CompletableFuture<>();
+            CompletableFuture<Created> running = inFlight.putIfAbsent(email, mine);
+            if (running == null) {
+                try {
+                    user.setPassword(encoder.encode(user.getPassword()));
+                    userService.create(user);
+                    Created created = new Created(user.getId(), fingerprint);
+                    mine.complete(created);
+                    return created;
+                } catch (RuntimeException ex) {
+                    mine.completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    inFlight.remove(email, mine);
+                }
+            }
+
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof FieldException) {
+                    throw alreadyRegistered(user.getEmail());
+                }
+                // the other request failed for reasons of its own, this one tries by itself
+            }
+        }
+    }
+
+    private byte[] fingerprint(User user) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            for (Object field : new Object[]{UserRepository.lowerCase(user.getEmail()), user.getPassword(), user.getRole(),
+                    user.getFirstName(), user.getLastName(), user.getBirthDate(), user.getAddress(), user.getPhoneNumber()}) {
+                digest.update(String.valueOf(field).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static FieldException alreadyRegistered(String email) {
+        return new FieldException("email", "User with email " + email + " is already registered");
+    }
+
+    /**
+     * The outcome shared with later requests; the payload is kept as a digest, never the password.
+     */
+    private record Created(Long id, byte[] fingerprint) {
+
+        Long idFor(byte[] fingerprint, Supplier<FieldException> otherwise) {
+            if (!Arrays.equals(this.fingerprint, fingerprint)) {
+                throw otherwise.get();
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.simple.services;
+
+import com.example.simple.events.UsersDeletedEvent;
+import com.example.simple.model.BulkDeleteRequest;
+import com.example.simple.model.DeleteJob;
+import com.example.simple.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Set-based deletion of many users.
+ * Small requests run on the calling thread, large ones are queued as {@link DeleteJob}s
+ * on a dedicated worker, so an admin cleanup never holds a request thread for its whole duration.
+ * Either way users are deleted with one statement per chunk of ids or emails,
+ * in a transaction that also records them in {@link UserOutbox}.
+ * <p>
+ * Queued and running jobs stay reachable until they finish, however long that takes;
+ * finished jobs are kept for {@code user.delete.jobRetention}, at most {@code user.delete.maxRetainedJobs} of them.
+ */
+@Service
+public class UserDeletionService implements DisposableBean {
+
+    private final int chunkSize;
+
+    private final int syncLimit;
+
+    private final UserRepository repo;
+
+    private final ApplicationEventPublisher events;
+
+    private final RegisteredEmails registeredEmails;
+
+    private final TransactionTemplate transactions;
+
+    private final UserOutbox outbox;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    // bounded by the executor queue, rejected jobs are removed again
+    private final ConcurrentMap<UUID, DeleteJob> unfinishedJobs = new ConcurrentHashMap<>();
+
+    private final Cache<UUID, DeleteJob> finishedJobs;
+
+    @Autowired
+    public UserDeletionService(UserRepository repo, ApplicationEventPublisher events, RegisteredEmails registeredEmails,
+                               TransactionTemplate transactions, UserOutbox outbox,
+                               @Value("${user.delete.chunkSize:1000}") int chunkSize,
+                               @Value("${user.delete.syncLimit:1000}") int syncLimit,
+                               @Value("${user.delete.queueCapacity:16}") int queueCapacity,
+                               @Value("${user.delete.jobRetention:1h}") Duration jobRetention,
+                               @Value("${user.delete.maxRetainedJobs:1000}") long maxRetainedJobs) {
+        this.repo = repo;
+        this.events = events;
+        this.registeredEmails = registeredEmails;
+        this.transactions = transactions;
+        this.outbox = outbox;
+        this.chunkSize = chunkSize;
+        this.syncLimit = syncLimit;
+
+        // one worker: concurrent mass deletes would only contend for the same table locks
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("user-delete-");
+        executor.initialize();
+
+        finishedJobs = Caffeine.newBuilder()
+                .maximumSize(maxRetainedJobs)
+                .expireAfterWrite(jobRetention)
+                .build();
+    }
+
+    public boolean isSynchronous(BulkDeleteRequest request) {
+        return request.size() <= syncLimit;
+    }
+
+    public int delete(BulkDeleteRequest request) {
+        return deleteInChunks(request, deleted -> {
+        });
+    }
+
+    /**
+     * @throws TaskRejectedException if too many jobs are already queued
+     */
+    public DeleteJob submit(BulkDeleteRequest request) {
+        DeleteJob job = new DeleteJob(request.size());
+        unfinishedJobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, request));
+        } catch (TaskRejectedException ex) {
+            unfinishedJobs.remove(job.getId());
+            throw ex;
+        }
+        return job;
+    }
+
+    public Optional<DeleteJob> findJob(UUID id) {
+        DeleteJob job = unfinishedJobs.get(id);
+        return Optional.ofNullable(job != null ? job : finishedJobs.getIfPresent(id));
+    }
+
+    private void run(DeleteJob job, BulkDeleteRequest request) {
+        job.started();
+        try {
+            deleteInChunks(request, job::deleted);
+            job.done();
+        } catch (RuntimeException ex) {
+            job.failed(ex.getMessage());
+        } finally {
+            // retained before it is removed, so a status request always finds it
+            finishedJobs.put(job.getId(), job);
+            unfinishedJobs.remove(job.getId());
+        }
+    }
+
+    private int deleteInChunks(BulkDeleteRequest request, IntConsumer progress) {
+        int deleted = 0;
+        for (List<Long> chunk : chunks(request.ids())) {
+            // emails are published too, principals are evicted by email (see UserService)
+            List<String> emails = new ArrayList<>();
+            int count = transactions.execute(status -> {
+                outbox.deleting(chunk);
+                emails.addAll(repo.findEmailsByIdIn(chunk));
+                return repo.deleteByIdIn(chunk);
+            });
+            events.publishEvent(new UsersDeletedEvent(chunk, emails));
+            registeredEmails.removed(count);
+            progress.accept(count);
+            deleted += count;
+        }
+        for (List<String> chunk : chunks(request.emails())) {
+            List<String> lowered = chunk.stream().map(UserRepository::lowerCase).toList();
+            int count = transactions.execute(status -> {
+                outbox.deletingByEmail(lowered);
+                return repo.deleteByEmailIn(lowered);
+            });
+            events.publishEvent(new UsersDeletedEvent(List.of(), chunk));
+            registeredEmails.removed(count);
+            progress.accept(count);
+            deleted += count;
+        }
+        return deleted;
+    }
+
+    private <T> List<List<T>> chunks(List<T> values) {
+        int count = (values.size() + chunkSize - 1) / chunkSize;
+        return IntStream.range(0, count)
+                .mapToObj(i -> values.subList(i * chunkSize, Math.min(values.size(), (i + 1) * chunkSize)))
+                .toList();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
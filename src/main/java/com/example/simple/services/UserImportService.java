@@ -0,0 +1,179 @@
+package com.example.simple.services;
+
+import com.example.simple.events.UsersCreatedEvent;
+import com.example.simple.model.BulkImportResult;
+import com.example.simple.model.BulkImportResult.RowError;
+import com.example.simple.model.User;
+import com.example.simple.repositories.UserRepository;
+import com.example.simple.validation.UserValidator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores users read from a partner feed chunk by chunk.
+ * Rows are checked by {@link UserValidator}, every chunk costs one query for the emails {@link RegisteredEmails}
+ * may have seen, none if it has seen none of them, and one batched insert transaction,
+ * a bad row is reported and skipped instead of failing the whole import.
+ * The users of a chunk are recorded by {@link UserOutbox} in its insert transaction.
+ */
+@Service
+public class UserImportService {
+
+    @Value("${user.import.chunkSize:500}")
+    private int chunkSize;
+
+    private final UserRepository repo;
+
+    private final UserValidator validator;
+
+    private final PasswordEncoder encoder;
+
+    private final RegisteredEmails registeredEmails;
+
+    private final ApplicationEventPublisher events;
+
+    private final TransactionTemplate transactions;
+
+    private final UserOutbox outbox;
+
+    @Autowired
+    public UserImportService(UserRepository repo, UserValidator validator, PasswordEncoder encoder,
+                             RegisteredEmails registeredEmails, ApplicationEventPublisher events,
+                             TransactionTemplate transactions, UserOutbox outbox) {
+        this.repo = repo;
+        this.validator = validator;
+        this.encoder = encoder;
+        this.registeredEmails = registeredEmails;
+        this.events = events;
+        this.transactions = transactions;
+        this.outbox = outbox;
+    }
+
+    /**
+     * @param rows users in submission order, parsing errors of single rows are reported as row errors
+     */
+    public BulkImportResult importUsers(MappingIterator<User> rows) {
+        List<RowError> errors = new ArrayList<>();
+        Set<String> seenEmails = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        int created = 0;
+
+        for (int index = 0; ; index++) {
+            User user;
+            try {
+                if (!rows.hasNextValue()) {
+                    break;
+                }
+                user = rows.nextValue();
+            } catch (JsonParseException ex) {
+                // malformed JSON, the parser cannot resynchronize on the next row
+                errors.add(new RowError(index, Map.of("row", ex.getOriginalMessage())));
+                break;
+            } catch (JsonMappingException ex) {
+                errors.add(new RowError(index, Map.of("row", ex.getOriginalMessage())));
+                continue;
+            } catch (Exception ex) {
+                errors.add(new RowError(index, Map.of("row", String.valueOf(ex.getMessage()))));
+                break;
+            }
+
+            Map<String, String> rowErrors = validator.newUserViolations(user);
+            if (rowErrors.isEmpty() && !seenEmails.add(UserRepository.lowerCase(user.getEmail()))) {
+                rowErrors = Map.of("email", "Email " + user.getEmail() + " is repeated in the import");
+            }
+            if (!rowErrors.isEmpty()) {
+                errors.add(new RowError(index, rowErrors));
+                continue;
+            }
+
+            user.setId(null); // to avoid inconsistency
+            chunk.add(new Row(index, user));
+            if (chunk.size() == chunkSize) {
+                created += flush(chunk, errors);
+                chunk.clear();
+            }
+        }
+        created += flush(chunk, errors);
+
+        errors.sort((a, b) -> Integer.compare(a.row(), b.row()));
+        return new BulkImportResult(created, errors);
+    }
+
+    private int flush(List<Row> chunk, List<RowError> errors) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        List<String> maybeRegistered = chunk.stream()
+                .map(r -> UserRepository.lowerCase(r.user().getEmail()))
+                .filter(registeredEmails::mightBeRegistered)
+                .toList();
+        Set<String> existing = maybeRegistered.isEmpty() ? Set.of() : repo.findExistingEmails(maybeRegistered);
+        List<Row> fresh = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (existing.contains(UserRepository.lowerCase(row.user().getEmail()))) {
+                errors.add(duplicate(row));
+            } else {
+                fresh.add(row);
+            }
+        }
+
+        // hashing dominates the cost of an import, spread it over the cores before the single insert transaction
+        fresh.parallelStream().forEach(row -> row.user().setPassword(encoder.encode(row.user().getPassword())));
+
+        fresh.forEach(row -> registeredEmails.registered(row.user().getEmail()));
+        List<Long> created;
+        try {
+            created = transactions.execute(status -> insert(fresh));
+        } catch (DataIntegrityViolationException ex) {
+            // a concurrent registration won the race for some email, isolate it row by row
+            created = saveOneByOne(fresh, errors);
+        }
+        events.publishEvent(new UsersCreatedEvent(created));
+        return created.size();
+    }
+
+    private List<Long> saveOneByOne(List<Row> rows, List<RowError> errors) {
+        List<Long> created = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            row.user().setId(null); // ids assigned by the failed batch were rolled back
+            try {
+                created.addAll(transactions.execute(status -> insert(List.of(row))));
+            } catch (DataIntegrityViolationException ex) {
+                errors.add(duplicate(row));
+            }
+        }
+        return created;
+    }
+
+    private List<Long> insert(List<Row> rows) {
+        // flushed first, the outbox rows are selected from the inserted users
+        repo.saveAll(rows.stream().map(Row::user).toList());
+        repo.flush();
+        List<Long> ids = rows.stream().map(row -> row.user().getId()).toList();
+        outbox.created(ids);
+        return ids;
+    }
+
+    private static RowError duplicate(Row row) {
+        return new RowError(row.index(), Map.of("email",
+                "User with email " + row.user().getEmail() + " is already registered"));
+    }
+
+    private record Row(int index, User user) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.simple.services;
+
+import com.example.simple.model.UserChange;
+import com.example.simple.repositories.UserChangeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records user mutations in the user_changes outbox, as part of the transaction making them:
+ * a change is published by {@link UserChangeRelay} if and only if the mutation committed.
+ * Each method is one INSERT ... SELECT over the users table, deletes have to be recorded before the users are gone.
+ */
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class UserOutbox {
+
+    private final UserChangeRepository repo;
+
+    private final Clock clock;
+
+    @Autowired
+    public UserOutbox(UserChangeRepository repo, Clock clock) {
+        this.repo = repo;
+        this.clock = clock;
+    }
+
+    public void created(Collection<Long> ids) {
+        record(ids, UserChange.Type.CREATED);
+    }
+
+    public void updated(Long id) {
+        record(List.of(id), UserChange.Type.UPDATED);
+    }
+
+    public void deleting(Collection<Long> ids) {
+        record(ids, UserChange.Type.DELETED);
+    }
+
+    /**
+     * @param emails lower-cased, see {@link com.example.simple.repositories.UserRepository#lowerCase}
+     */
+    public void deletingByEmail(Collection<String> emails) {
+        if (!emails.isEmpty()) {
+            repo.insertForEmails(emails, UserChange.Type.DELETED.name(), clock.instant());
+        }
+    }
+
+    private void record(Collection<Long> ids, UserChange.Type type) {
+        if (!ids.isEmpty()) {
+            repo.insertForIds(ids, type.name(), clock.instant());
+        }
+    }
+}
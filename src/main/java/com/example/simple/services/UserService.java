@@ -0,0 +1,150 @@
+package com.example.simple.services;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.events.UsersCreatedEvent;
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import com.example.simple.model.UserSearch;
+import com.example.simple.model.UserView;
+import com.example.simple.repositories.UserRepository;
+import com.example.simple.repositories.UserSpecifications;
+import com.example.simple.util.BirthDateCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Transaction boundaries of the single user endpoints.
+ * Callers pass validated users with hashed passwords, so a transaction, and the connection it holds,
+ * only spans the statements: never password hashing and never JSON rendering, with open-in-view off.
+ * Events are published inside the transaction, listeners run once it has committed.
+ * <p>
+ * Lookups are read-only transactions, which a configured read replica serves (see ReadReplicaConfig);
+ * everything else reads the primary. Emails are not checked before an insert: the unique index
+ * rejects a registered one in the same round trip, also when two requests race for it.
+ * Every mutation is recorded by {@link UserOutbox} in its own transaction.
+ */
+@Service
+@Transactional
+public class UserService {
+
+    public enum UpdateOutcome {
+        UPDATED, NOT_FOUND, VERSION_MISMATCH
+    }
+
+    private final UserRepository repo;
+
+    private final ApplicationEventPublisher events;
+
+    private final RegisteredEmails registeredEmails;
+
+    private final UserOutbox outbox;
+
+    @Autowired
+    public UserService(UserRepository repo, ApplicationEventPublisher events, RegisteredEmails registeredEmails,
+                       UserOutbox outbox) {
+        this.repo = repo;
+        this.events = events;
+        this.registeredEmails = registeredEmails;
+        this.outbox = outbox;
+    }
+
+    /**
+     * @throws FieldException if the email is already registered
+     */
+    public User create(User user) {
+        user.setId(null); // to avoid inconsistency
+        registeredEmails.registered(user.getEmail());
+        try {
+            User saved = repo.save(user);
+            // flushed here so that the unique index violation surfaces as this message, not at commit
+            repo.flush();
+            outbox.created(Collections.singletonList(user.getId()));
+            events.publishEvent(new UsersCreatedEvent(Collections.singletonList(user.getId())));
+            return saved;
+        } catch (DataIntegrityViolationException ex) {
+            throw alreadyRegistered(user.getEmail());
+        }
+    }
+
+    /**
+     * Writes the non-null fields of {@code changes} in one UPDATE.
+     *
+     * @param expectedVersions versions the client accepts, null to update any version
+     */
+    public UpdateOutcome update(Long id, User changes, Collection<Long> expectedVersions) {
+        if (repo.updateNonNullFields(id, changes, expectedVersions) == 0) {
+            // the failure path is the only one that needs a second query
+            return repo.existsById(id) ? UpdateOutcome.VERSION_MISMATCH : UpdateOutcome.NOT_FOUND;
+        }
+        outbox.updated(id);
+        events.publishEvent(new UserChangedEvent(id, emailOf(id)));
+        return UpdateOutcome.UPDATED;
+    }
+
+    public void delete(Long id) {
+        outbox.deleting(List.of(id));
+        String email = emailOf(id);
+        registeredEmails.removed(repo.deleteByIdIn(List.of(id)));
+        events.publishEvent(new UserChangedEvent(id, email));
+    }
+
+    /*
+    Principals are cached by email: evicting by key also waits for a load of that principal still in flight,
+    which could otherwise cache the row as it was before this write
+     */
+    private String emailOf(Long id) {
+        return repo.findEmailsByIdIn(List.of(id)).stream().findFirst().orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<UserView> findView(Long id) {
+        return repo.findViewById(id);
+    }
+
+    /**
+     * {@link #findView(Long)} in a read-write transaction, so it reads the primary: a view loaded
+     * from a lagging replica right after a write would be cached until its TTL, past the eviction of that write.
+     */
+    public Optional<UserView> findViewForCache(Long id) {
+        return repo.findViewById(id);
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserView> findByBirthDateBetween(LocalDate from, LocalDate to) {
+        return repo.findByBirthDateBetween(from, to);
+    }
+
+    /**
+     * One keyset page of the (birthDate, id) ordering, starting after {@code cursor} or at the beginning if it is null.
+     */
+    @Transactional(readOnly = true)
+    public List<UserView> findPage(LocalDate from, LocalDate to, BirthDateCursor cursor, int size) {
+        PageRequest pageRequest = PageRequest.ofSize(size);
+        if (cursor == null) {
+            return repo.findByBirthDateBetweenOrderByBirthDateAscIdAsc(from, to, pageRequest);
+        }
+        return repo.findByBirthDateBetweenAfter(from, to, cursor.birthDate(), cursor.id(), pageRequest);
+    }
+
+    /**
+     * Filters are expected to have passed SearchPolicy, the query is built from the given ones only.
+     */
+    @Transactional(readOnly = true)
+    public List<UserView> search(UserSearch search) {
+        return repo.search(UserSpecifications.matching(search), search.sort(), search.limit());
+    }
+
+    private static FieldException alreadyRegistered(String email) {
+        return new FieldException("email", "User with email " + email + " is already registered");
+    }
+}
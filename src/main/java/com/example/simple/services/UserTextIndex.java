@@ -0,0 +1,270 @@
+package com.example.simple.services;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.UserView;
+import com.example.simple.repositories.UserRepository;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Lucene index of the searchable text of users: names, email, address and phone number.
+ * <p>
+ * Documents store the whole {@link UserView}, so a search is answered from the index alone.
+ * Only {@link UserTextIndexer} writes, from a single thread; every write is committed and then made
+ * visible to searches by refreshing the near-real-time searcher, searches never wait for writes.
+ * The index lives in {@code user.textIndex.path}, or in memory when the path is empty.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserTextIndex implements DisposableBean {
+
+    private static final String ID = "id";
+    private static final String EMAIL_KEY = "emailKey";
+    private static final String NAME = "name";
+    private static final String EMAIL = "emailText";
+    private static final String ADDRESS = "address";
+    private static final String PHONE = "phone";
+
+    // relevance of a match in each text field
+    private static final Map<String, Float> TEXT_FIELDS = Map.of(NAME, 3f, EMAIL, 2f, ADDRESS, 1f);
+
+    // the tokenizer keeps "john.smith" or "mail.org" whole, emails and queries are split here so each part is a word
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[._+-]");
+
+    // phone numbers match on any run of at least this many digits
+    private static final int MIN_PHONE_DIGITS = 3;
+
+    // shorter words are matched exactly or as a prefix only
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final Directory directory;
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searchers;
+
+    @Autowired
+    public UserTextIndex(@Value("${user.textIndex.path:}") String path) throws IOException {
+        this(path.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(path)));
+    }
+
+    public UserTextIndex(Directory directory) throws IOException {
+        this.directory = directory;
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searchers = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Ranked users matching every word of {@code text}: exactly or as a prefix in their names, email or address,
+     * with one typo in their names or email, and digits anywhere in their phone number.
+     *
+     * @throws FieldException if the words of {@code text} expand to more clauses than Lucene allows
+     */
+    public List<UserView> search(String text, int limit) {
+        try {
+            Query query = query(text);
+            if (query == null) {
+                return List.of();
+            }
+            IndexSearcher searcher = searchers.acquire();
+            try {
+                StoredFields stored = searcher.storedFields();
+                ScoreDoc[] hits = searcher.search(query, limit).scoreDocs;
+                List<UserView> users = new ArrayList<>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    users.add(toView(stored.document(hit.doc)));
+                }
+                return users;
+            } finally {
+                searchers.release(searcher);
+            }
+        } catch (IndexSearcher.TooManyClauses ex) {
+            throw new FieldException("q", "Q has too many words or too many near matches, search for fewer words");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public long size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * Writes one batch of changes and makes it visible to searches.
+     * Email deletions apply first, a user registered again with a deleted email is among the upserts.
+     *
+     * @param upserts    current state of created or updated users
+     * @param deletedIds users that no longer exist
+     * @param deletedEmails emails of users that no longer exist
+     */
+    void apply(Collection<UserView> upserts, Collection<Long> deletedIds, Collection<String> deletedEmails) throws IOException {
+        for (String email : deletedEmails) {
+            writer.deleteDocuments(new Term(EMAIL_KEY, UserRepository.lowerCase(email)));
+        }
+        for (Long id : deletedIds) {
+            writer.deleteDocuments(new Term(ID, id.toString()));
+        }
+        for (UserView user : upserts) {
+            writer.updateDocument(new Term(ID, user.id().toString()), toDocument(user));
+        }
+        publish();
+    }
+
+    /**
+     * Replaces the whole index with {@code users}, searches see the old index until the new one is committed.
+     */
+    void replaceAll(Stream<UserView> users) throws IOException {
+        writer.deleteAll();
+        for (UserView user : (Iterable<UserView>) users::iterator) {
+            writer.addDocument(toDocument(user));
+        }
+        publish();
+    }
+
+    private void publish() throws IOException {
+        writer.commit();
+        searchers.maybeRefreshBlocking();
+    }
+
+    private Query query(String text) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        StringBuilder digits = new StringBuilder();
+        boolean empty = true;
+        for (String word : text.trim().split("\\s+")) {
+            if (isPhoneLike(word)) {
+                // "+1 555 123" is one number typed with spaces
+                word.chars().filter(Character::isDigit).forEach(digits::appendCodePoint);
+                continue;
+            }
+            for (String term : analyze(WORD_SEPARATORS.matcher(word).replaceAll(" "))) {
+                query.add(wordQuery(term), BooleanClause.Occur.MUST);
+                empty = false;
+            }
+        }
+        if (digits.length() >= MIN_PHONE_DIGITS) {
+            query.add(new BoostQuery(new PrefixQuery(new Term(PHONE, digits.toString())), 2), BooleanClause.Occur.MUST);
+            empty = false;
+        }
+        return empty ? null : query.build();
+    }
+
+    private static Query wordQuery(String term) {
+        BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+        TEXT_FIELDS.forEach((field, boost) -> {
+            anyField.add(new BoostQuery(new TermQuery(new Term(field, term)), 4 * boost), BooleanClause.Occur.SHOULD);
+            anyField.add(new BoostQuery(new PrefixQuery(new Term(field, term)), 2 * boost), BooleanClause.Occur.SHOULD);
+            // two edits cost about ten times as much as one, and the many numbers of addresses are near-misses of each other
+            if (term.length() >= MIN_FUZZY_LENGTH && !field.equals(ADDRESS)) {
+                anyField.add(new BoostQuery(new FuzzyQuery(new Term(field, term), 1, 1), boost), BooleanClause.Occur.SHOULD);
+            }
+        });
+        return anyField.build();
+    }
+
+    private static boolean isPhoneLike(String word) {
+        return !word.isEmpty() && word.chars().allMatch(c -> Character.isDigit(c) || "+-().".indexOf(c) >= 0);
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream(NAME, text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return terms;
+    }
+
+    private static Document toDocument(UserView user) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, user.id().toString(), Field.Store.YES));
+        doc.add(new StringField(EMAIL_KEY, UserRepository.lowerCase(user.email()), Field.Store.NO));
+        doc.add(new StoredField("version", user.version()));
+        doc.add(new StoredField("email", user.email()));
+        doc.add(new StoredField("firstName", user.firstName()));
+        doc.add(new StoredField("lastName", user.lastName()));
+        doc.add(new StoredField("birthDate", user.birthDate().toString()));
+
+        doc.add(new TextField(NAME, user.firstName() + " " + user.lastName(), Field.Store.NO));
+        doc.add(new TextField(EMAIL, WORD_SEPARATORS.matcher(user.email()).replaceAll(" "), Field.Store.NO));
+        if (user.address() != null) {
+            doc.add(new TextField(ADDRESS, user.address(), Field.Store.YES));
+        }
+        if (user.phoneNumber() != null) {
+            doc.add(new StoredField("phoneNumber", user.phoneNumber()));
+            // every suffix of the digits, so a prefix query finds digits anywhere in the number
+            String phoneDigits = user.phoneNumber().replaceAll("\\D", "");
+            for (int i = 0; i <= phoneDigits.length() - MIN_PHONE_DIGITS; i++) {
+                doc.add(new StringField(PHONE, phoneDigits.substring(i), Field.Store.NO));
+            }
+        }
+        return doc;
+    }
+
+    private static UserView toView(Document doc) {
+        return new UserView(
+                Long.valueOf(doc.get(ID)),
+                doc.getField("version").numericValue().longValue(),
+                doc.get("email"),
+                doc.get("firstName"),
+                doc.get("lastName"),
+                LocalDate.parse(doc.get("birthDate")),
+                doc.get(ADDRESS),
+                doc.get("phoneNumber"));
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        searchers.close();
+        writer.close();
+        directory.close();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.simple.services;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.events.UsersCreatedEvent;
+import com.example.simple.events.UsersDeletedEvent;
+import com.example.simple.model.UserView;
+import com.example.simple.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps {@link UserTextIndex} in step with the users table.
+ * <p>
+ * Write events only queue the ids they name. A single worker takes everything queued since its last batch,
+ * reloads those users with one query and writes them as one index commit, so a burst of writes costs one commit
+ * instead of one per user. Users are reloaded rather than copied from the events: a batch writes the latest
+ * committed state whatever order the events arrived in, and ids that are no longer found are removed.
+ * <p>
+ * A rebuild from the table is queued like any change: on demand, and once the application is ready
+ * if the index is empty or {@code user.textIndex.rebuildOnStartup} is set.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserTextIndexer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserTextIndexer.class);
+
+    private final UserTextIndex index;
+
+    private final UserRepository repo;
+
+    private final TransactionTemplate transactions;
+
+    private final boolean rebuildOnStartup;
+
+    private final int maxBatchSize;
+
+    private final BlockingQueue<Change> queue = new LinkedBlockingQueue<>();
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Timer batches;
+
+    private final Counter failures;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public UserTextIndexer(UserTextIndex index, UserRepository repo, TransactionTemplate transactions,
+                           @Value("${user.textIndex.rebuildOnStartup:false}") boolean rebuildOnStartup,
+                           @Value("${user.textIndex.maxBatchSize:1000}") int maxBatchSize,
+                           MeterRegistry meterRegistry) {
+        this.index = index;
+        this.repo = repo;
+        this.transactions = transactions;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.maxBatchSize = maxBatchSize;
+
+        batches = meterRegistry.timer("user.textindex.batches");
+        failures = meterRegistry.counter("user.textindex.failures");
+        meterRegistry.gauge("user.textindex.pending", queue, BlockingQueue::size);
+        meterRegistry.gauge("user.textindex.documents", index, UserTextIndex::size);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("user-indexer-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(5);
+        executor.initialize();
+        executor.execute(this::run);
+    }
+
+    public void rebuild() {
+        queue.add(new Rebuild());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildOnStartup() {
+        if (rebuildOnStartup || index.size() == 0) {
+            rebuild();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onCreated(UsersCreatedEvent event) {
+        event.ids().forEach(id -> queue.add(new Reload(id)));
+    }
+
+    // changes published by email only never touch the indexed text, the id is all that matters here
+    @TransactionalEventListener(fallbackExecution = true)
+    void onChanged(UserChangedEvent event) {
+        if (event.id() != null) {
+            queue.add(new Reload(event.id()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onDeleted(UsersDeletedEvent event) {
+        event.ids().forEach(id -> queue.add(new Reload(id)));
+        event.emails().forEach(email -> queue.add(new EmailDeleted(email)));
+    }
+
+    private void run() {
+        List<Change> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Change first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                batches.record(() -> write(batch));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                // the batch is lost, not the worker: the next change of those users or a rebuild repairs the index
+                failures.increment();
+                log.warn("Could not index {} user changes", batch.size(), ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Change> batch) {
+        boolean rebuild = false;
+        Set<Long> ids = new HashSet<>();
+        List<String> deletedEmails = new ArrayList<>();
+        for (Change change : batch) {
+            if (change instanceof Reload reload) {
+                ids.add(reload.id());
+            } else if (change instanceof EmailDeleted deleted) {
+                deletedEmails.add(deleted.email());
+            } else {
+                rebuild = true;
+            }
+        }
+
+        try {
+            if (rebuild) {
+                // a read-write transaction reads the primary, a replica may not have the latest writes yet
+                transactions.executeWithoutResult(status -> {
+                    try (Stream<UserView> users = repo.streamAllViews()) {
+                        index.replaceAll(users);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+            if (!ids.isEmpty() || !deletedEmails.isEmpty()) {
+                List<UserView> found = ids.isEmpty() ? List.of() : transactions.execute(status -> repo.findViewsByIdIn(ids));
+                found.forEach(user -> ids.remove(user.id()));
+                index.apply(found, ids, deletedEmails);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        executor.shutdown();
+    }
+
+    private sealed interface Change permits Reload, EmailDeleted, Rebuild {
+    }
+
+    private record Reload(Long id) implements Change {
+    }
+
+    private record EmailDeleted(String email) implements Change {
+    }
+
+    private record Rebuild() implements Change {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.simple.services;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.events.UsersDeletedEvent;
+import com.example.simple.model.UserView;
+import com.example.simple.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of single users served by {@code GET /users/{id}}.
+ * <p>
+ * Entries are dropped on the events published by every write, the TTL only bounds how long
+ * a change made outside this instance stays invisible. A load running while a user is updated
+ * cannot leave the old view behind: invalidation waits for the load of the same key to finish.
+ * Absent users are not cached, so creating a user needs no invalidation.
+ * Views are loaded from the primary, never from a read replica that may not have seen the last write yet.
+ */
+@Component
+public class UserViewCache {
+
+    private final UserService userService;
+
+    private final Cache<Long, UserView> cache;
+
+    @Autowired
+    public UserViewCache(UserService userService,
+                         @Value("${user.viewCache.maxSize:10000}") long maxSize,
+                         @Value("${user.viewCache.ttl:10m}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.views");
+    }
+
+    public Optional<UserView> get(Long id) {
+        return Optional.ofNullable(cache.get(id, key -> userService.findViewForCache(key).orElse(null)));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void evict(UserChangedEvent event) {
+        if (event.id() != null) {
+            cache.invalidate(event.id());
+        }
+        if (event.email() != null) {
+            cache.asMap().values().removeIf(view -> view.email().equalsIgnoreCase(event.email()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void evict(UsersDeletedEvent event) {
+        cache.invalidateAll(event.ids());
+        if (!event.emails().isEmpty()) {
+            Set<String> emails = event.emails().stream().map(UserRepository::lowerCase).collect(Collectors.toSet());
+            cache.asMap().values().removeIf(view -> emails.contains(UserRepository.lowerCase(view.email())));
+        }
+    }
+}
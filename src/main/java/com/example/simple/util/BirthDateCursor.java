@@ -0,0 +1,34 @@
+package com.example.simple.util;
+
+import com.example.simple.exceptions.FieldException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the (birthDate, id) ordering of users.
+ * Clients receive it as an opaque token and send it back as the {@code after} parameter.
+ */
+public record BirthDateCursor(LocalDate birthDate, long id) {
+
+    private static final char SEPARATOR = ':';
+
+    public String encode() {
+        String raw = birthDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static BirthDateCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(SEPARATOR);
+            return new BirthDateCursor(
+                    LocalDate.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new FieldException("after", "Malformed cursor: " + token);
+        }
+    }
+}
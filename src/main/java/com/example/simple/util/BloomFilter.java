@@ -0,0 +1,106 @@
+package com.example.simple.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of strings that any number of threads may update and query without locking.
+ * Bits are set with an atomic OR on their word, so concurrent puts never lose each other's bits.
+ * {@link #mightContain} never answers false for a string that was put before it was called.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    private final LongAdder bitCount = new LongAdder();
+
+    /**
+     * Sized with the usual optimum: {@code -n ln p / ln(2)^2} bits and {@code m / n ln 2} hash functions.
+     *
+     * @param expectedInsertions number of distinct strings the filter is meant to hold
+     * @param fpp                false positive probability once they are all in
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Need positive insertions and 0 < fpp < 1");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int wordCount = Math.toIntExact((bits + Long.SIZE - 1) / Long.SIZE);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * @return false if every bit of the value was already set, i.e. it was put before or is a false positive
+     */
+    public boolean put(CharSequence value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0xC2B2AE3D27D4EB4FL);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            // plain read first: once the filter fills up most bits are already set
+            if ((words.get(word) & mask) == 0
+                    && (words.getAndAccumulate(word, mask, (current, bit) -> current | bit) & mask) == 0) {
+                bitCount.increment();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean mightContain(CharSequence value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Probability that a string never put is reported as contained, estimated from the share of set bits.
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount.sum() / bitSize, hashCount);
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    // FNV-1a over the chars, spread by mix: the k indexes are derived from two hashes (Kirsch and Mitzenmacher)
+    private static long hash(CharSequence value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // finalizer of MurmurHash3
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
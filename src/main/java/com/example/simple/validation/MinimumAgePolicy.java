@@ -0,0 +1,70 @@
+package com.example.simple.validation;
+
+import com.example.simple.exceptions.FieldException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Only users older than {@code user.minAge} years may be registered.
+ * <p>
+ * The latest acceptable birth date only changes at midnight, so it is cached together with
+ * the bounds of the day it was computed for and recomputed by the first check after the day ends.
+ * Checks in between read one volatile field and the clock, without locking or allocating.
+ */
+@Component
+public class MinimumAgePolicy {
+
+    private final Clock clock;
+
+    private final int minAge;
+
+    private volatile Cutoff cutoff;
+
+    @Autowired
+    public MinimumAgePolicy(Clock clock, @Value("${user.minAge}") int minAge) {
+        this.clock = clock;
+        this.minAge = minAge;
+        this.cutoff = computeCutoff(clock.millis());
+    }
+
+    public void check(LocalDate birthDate) {
+        if (birthDate.isAfter(lastValidBirthDate())) {
+            throw new FieldException("birthDate",
+                    "Only users who are more than " + minAge + " years are allowed to use resource. " +
+                            "Provided birth date: " + birthDate);
+        }
+    }
+
+    public LocalDate lastValidBirthDate() {
+        long now = clock.millis();
+        Cutoff current = cutoff;
+        if (now >= current.validUntil() || now < current.validFrom()) {
+            // racing threads compute the same value, whichever write wins is correct
+            current = computeCutoff(now);
+            cutoff = current;
+        }
+        return current.lastValidBirthDate();
+    }
+
+    /*
+    One could force clients to provide info about timezone in order to properly calculate
+    lastValidBirthDate, but for the sake of simplicity the zone of the clock is used here
+     */
+    private Cutoff computeCutoff(long nowMillis) {
+        ZoneId zone = clock.getZone();
+        LocalDate today = LocalDate.ofInstant(Instant.ofEpochMilli(nowMillis), zone);
+        return new Cutoff(
+                today.atStartOfDay(zone).toInstant().toEpochMilli(),
+                today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli(),
+                today.minusYears(minAge));
+    }
+
+    private record Cutoff(long validFrom, long validUntil, LocalDate lastValidBirthDate) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.simple.validation;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.UserSearch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Only filter combinations an index can serve are searched.
+ * <p>
+ * Email and last name prefixes and the birth date range are backed by indexes; first name, role
+ * and enabled are not selective and only narrow down the rows one of those found. A search needs one
+ * indexed filter, and a birth date range without a prefix has to be sorted by birth date, so the index
+ * is walked in order and the query stops at the limit instead of sorting the whole range.
+ * Short prefixes are refused as they match too large a share of the index.
+ */
+@Component
+public class SearchPolicy {
+
+    private final int minPrefixLength;
+
+    private final int maxLimit;
+
+    @Autowired
+    public SearchPolicy(@Value("${user.search.minPrefixLength:2}") int minPrefixLength,
+                        @Value("${user.page.maxSize:1000}") int maxLimit) {
+        this.minPrefixLength = minPrefixLength;
+        this.maxLimit = maxLimit;
+    }
+
+    public void check(UserSearch search) {
+        if (search.limit() < 1 || search.limit() > maxLimit) {
+            throw new FieldException("limit", "Limit should be between 1 and " + maxLimit + ". Provided limit: " + search.limit());
+        }
+        checkPrefix("email", search.email());
+        checkPrefix("firstName", search.firstName());
+        checkPrefix("lastName", search.lastName());
+        if (search.from() != null && search.to() != null && search.from().isAfter(search.to())) {
+            throw new FieldException("from", "From should not be after to. Provided from: " + search.from());
+        }
+
+        boolean prefixed = search.email() != null || search.lastName() != null;
+        if (!prefixed && search.from() == null && search.to() == null) {
+            throw new FieldException("Filter by email, lastName, from or to, the other filters alone would read every user");
+        }
+        if (!prefixed && search.order() != UserSearch.Order.BIRTH_DATE) {
+            throw new FieldException("sort", "A birth date range without an email or lastName filter is only sorted by birthDate. " +
+                    "Provided sort: " + search.order().parameter());
+        }
+    }
+
+    private void checkPrefix(String field, String prefix) {
+        if (prefix != null && prefix.length() < minPrefixLength) {
+            throw new FieldException(field, "Prefix should have at least " + minPrefixLength + " characters. " +
+                    "Provided prefix: " + prefix);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.simple.validation;
+
+import com.example.simple.exceptions.FieldErrorsException;
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Payload rules of users, shared by create, bulk import and PATCH.
+ * <p>
+ * Replaces the Bean Validation annotations of {@link User}: the checks are plain code over
+ * a precompiled email pattern, and the error map is only allocated once a rule is violated,
+ * so a valid payload is checked without reflection.
+ * Messages are the ones the annotations produced, so responses keep their shape.
+ */
+@Component
+public class UserValidator {
+
+    private static final String LOCAL_ATOM = "[a-zA-Z0-9_!#$%&’*+/=?`{|}~^-]+";
+
+    private static final String DOMAIN_LABEL = "[a-zA-Z0-9](?:[a-zA-Z0-9-]{0,61}[a-zA-Z0-9])?";
+
+    /*
+    Accepts what @Email(regexp = "^[a-zA-Z0-9_!#$%&’*+/=?`{|}~^.-]+@[a-zA-Z0-9.-]+$") accepted: the characters
+    of that regexp, combined with the rules of Hibernate's own email check. The local part is at most 64 characters
+    and has no empty dot-separated atom; the domain is at most 255 characters of labels up to 63 characters long,
+    which neither start nor end with a dash
+     */
+    private static final Pattern EMAIL = Pattern.compile("^(?=[^@]{1,64}@)" + LOCAL_ATOM + "(?:\\." + LOCAL_ATOM + ")*"
+            + "@(?=.{1,255}$)" + DOMAIN_LABEL + "(?:\\." + DOMAIN_LABEL + ")*$");
+
+    private static final String INVALID_EMAIL = "must be a well-formed email address";
+    private static final String BLANK = "must not be blank";
+    private static final String NULL = "must not be null";
+
+    private final MinimumAgePolicy agePolicy;
+
+    @Autowired
+    public UserValidator(MinimumAgePolicy agePolicy) {
+        this.agePolicy = agePolicy;
+    }
+
+    /**
+     * Checks a user to be created.
+     *
+     * @throws FieldErrorsException with a message per invalid field
+     * @throws FieldException       if the user is too young
+     */
+    public void validateNew(User user) {
+        Map<String, String> errors = fieldErrors(user);
+        if (!errors.isEmpty()) {
+            throw new FieldErrorsException(errors);
+        }
+        agePolicy.check(user.getBirthDate());
+    }
+
+    /**
+     * Same rules as {@link #validateNew(User)} for callers that collect errors instead of failing,
+     * the age rule is reported under {@code row} as the bulk import always did.
+     *
+     * @return message per invalid field, empty if the user is valid
+     */
+    public Map<String, String> newUserViolations(User user) {
+        Map<String, String> errors = fieldErrors(user);
+        if (errors.isEmpty()) {
+            try {
+                agePolicy.check(user.getBirthDate());
+            } catch (FieldException ex) {
+                return Map.of("row", ex.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Checks the provided (non-null) fields of a partial update.
+     *
+     * @throws FieldException describing the first invalid field, or if no updatable field is provided
+     */
+    public void validatePatch(User changes) {
+        // an empty patch would still bump the version and record a change that changed nothing
+        if (changes.getPassword() == null && changes.getFirstName() == null && changes.getLastName() == null
+                && changes.getBirthDate() == null && changes.getAddress() == null && changes.getPhoneNumber() == null) {
+            throw new FieldException("At least one of password, firstName, lastName, birthDate, address " +
+                    "or phoneNumber should be provided");
+        }
+        if (changes.getPassword() != null && changes.getPassword().isBlank()) {
+            throw new FieldException("password", "Password should not be blank");
+        }
+        if (changes.getFirstName() != null && changes.getFirstName().isBlank()) {
+            throw new FieldException("firstName", "First name should not be blank");
+        }
+        if (changes.getLastName() != null && changes.getLastName().isBlank()) {
+            throw new FieldException("lastName", "Last name should not be blank");
+        }
+        if (changes.getBirthDate() != null) {
+            agePolicy.check(changes.getBirthDate());
+        }
+    }
+
+    private static Map<String, String> fieldErrors(User user) {
+        Map<String, String> errors = null;
+        if (user.getEmail() == null || !EMAIL.matcher(user.getEmail()).matches()) {
+            errors = put(errors, "email", INVALID_EMAIL);
+        }
+        if (isBlank(user.getPassword())) {
+            errors = put(errors, "password", BLANK);
+        }
+        if (isBlank(user.getFirstName())) {
+            errors = put(errors, "firstName", BLANK);
+        }
+        if (isBlank(user.getLastName())) {
+            errors = put(errors, "lastName", BLANK);
+        }
+        if (user.getBirthDate() == null) {
+            errors = put(errors, "birthDate", NULL);
+        }
+        return errors == null ? Map.of() : errors;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static Map<String, String> put(Map<String, String> errors, String field, String message) {
+        if (errors == null) {
+            errors = new HashMap<>(8);
+        }
+        errors.put(field, message);
+        return errors;
+    }
+}
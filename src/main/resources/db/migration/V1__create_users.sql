@@ -0,0 +1,23 @@
+-- ids are drawn in blocks of 50, see the pooled sequence generator of User
+CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE users (
+    id bigint PRIMARY KEY,
+    version bigint NOT NULL DEFAULT 0,
+    email varchar(255) NOT NULL,
+    email_lower varchar(255) GENERATED ALWAYS AS (LOWER(email)),
+    password varchar(255) NOT NULL,
+    role varchar(16) CHECK (role IN ('BASIC', 'ADMIN')),
+    enabled boolean NOT NULL,
+    first_name varchar(255) NOT NULL,
+    last_name varchar(255) NOT NULL,
+    birth_date date NOT NULL,
+    address varchar(255),
+    phone_number varchar(255)
+);
+
+-- emails are unique regardless of case, lookups by email go through this index
+CREATE UNIQUE INDEX users_email_lower_idx ON users (email_lower);
+
+-- birth date range listing and its keyset pagination, ordered by (birth_date, id)
+CREATE INDEX users_birth_date_id_idx ON users (birth_date, id);
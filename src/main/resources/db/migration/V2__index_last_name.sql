@@ -0,0 +1,5 @@
+-- last name prefix search of GET /users/search, case-insensitive like the email lookups,
+-- ordered by (last_name_lower, id) so a sorted search can stop after its limit
+ALTER TABLE users ADD COLUMN last_name_lower varchar(255) GENERATED ALWAYS AS (LOWER(last_name));
+
+CREATE INDEX users_last_name_lower_id_idx ON users (last_name_lower, id);
@@ -0,0 +1,13 @@
+-- outbox of user mutations, written in the transaction of the mutation (see UserOutbox);
+-- seq stays null until the relay publishes the row and numbers it densely in publishing order
+CREATE TABLE user_changes (
+    id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    seq bigint,
+    user_id bigint NOT NULL,
+    type varchar(16) NOT NULL CHECK (type IN ('CREATED', 'UPDATED', 'DELETED')),
+    changed_at timestamp(6) with time zone NOT NULL
+);
+
+-- unpublished rows (seq is null) for the relay, GET /users/changes?since= seeks on it;
+-- unique, so two relays numbering the same batch cannot both commit
+CREATE UNIQUE INDEX user_changes_seq_idx ON user_changes (seq);
@@ -1,37 +1,95 @@
 package com.example.simple;
 
 
+import com.example.simple.config.BinaryFormatsConfig;
 import com.example.simple.controllers.UserController;
+import com.example.simple.events.UserChangedEvent;
 import com.example.simple.model.User;
+import com.example.simple.model.UserChange;
+import com.example.simple.model.UserChangeView;
+import com.example.simple.model.UserView;
 import com.example.simple.repositories.UserRepository;
+import com.example.simple.securiry.CachingDaoAuthenticationProvider;
+import com.example.simple.securiry.DatabaseUserDetailsService;
+import com.example.simple.securiry.PasswordEncoderConfig;
+import com.example.simple.securiry.Role;
 import com.example.simple.securiry.SecurityConfig;
+import com.example.simple.securiry.UserDetailsImpl;
+import com.example.simple.services.RegisteredEmails;
+import com.example.simple.services.UserChangeFeed;
+import com.example.simple.services.UserCreationService;
+import com.example.simple.services.UserDeletionService;
+import com.example.simple.services.UserImportService;
+import com.example.simple.services.UserOutbox;
+import com.example.simple.services.UserService;
+import com.example.simple.services.UserTextIndex;
+import com.example.simple.services.UserTextIndexer;
+import com.example.simple.services.UserViewCache;
+import com.example.simple.util.BirthDateCursor;
+import com.example.simple.validation.MinimumAgePolicy;
+import com.example.simple.validation.SearchPolicy;
+import com.example.simple.validation.UserValidator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MockMvc;
-
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
 @WebMvcTest(UserController.class)
-@ContextConfiguration(classes = {UserController.class, SecurityConfig.class})
+@ContextConfiguration(classes = {UserController.class, UserService.class, UserCreationService.class, UserImportService.class, UserDeletionService.class,
+        UserViewCache.class, MinimumAgePolicy.class, UserValidator.class, SearchPolicy.class, SimpleRestApiApplicationTest.FixedClockConfig.class,
+        SimpleRestApiApplicationTest.MeterRegistryConfig.class, SimpleRestApiApplicationTest.TransactionConfig.class, SecurityConfig.class, PasswordEncoderConfig.class, DatabaseUserDetailsService.class,
+        CachingDaoAuthenticationProvider.class, BinaryFormatsConfig.class})
 @TestPropertySource(locations = "classpath:application.yml")
+@RecordApplicationEvents
 class SimpleRestApiApplicationTest {
 
     @Autowired
@@ -40,24 +98,110 @@ class SimpleRestApiApplicationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserViewCache viewCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEvents events;
+
     @MockBean
     private UserRepository repo;
 
+    @MockBean
+    private RegisteredEmails registeredEmails;
+
+    @MockBean
+    private UserTextIndex textIndex;
+
+    @MockBean
+    private UserTextIndexer textIndexer;
+
+    @MockBean
+    private UserOutbox outbox;
+
+    @MockBean
+    private UserChangeFeed changeFeed;
+
     private static final String VALID_EMAIL = "user@example.com";
     private static final String VALID_PASSWORD = "password";
     private static final String VALID_FIRST_NAME = "Nick";
     private static final String VALID_LAST_NAME = "Freak";
     private static LocalDate VALID_BIRTH_DATE;
 
+    private static final Clock CLOCK = Clock.fixed(Instant.now(), ZoneId.systemDefault());
+
+    @TestConfiguration
+    static class FixedClockConfig {
+        @Bean
+        Clock clock() {
+            return CLOCK;
+        }
+    }
+
+    @TestConfiguration
+    static class MeterRegistryConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @TestConfiguration
+    static class TransactionConfig {
+        // the repository is mocked, the callbacks only have to run
+        @Bean
+        TransactionTemplate transactionTemplate() {
+            return new TransactionTemplate(new AbstractPlatformTransactionManager() {
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                }
+            });
+        }
+    }
+
     @BeforeAll
     static void init(@Value("${user.minAge}") int minAge) {
-        VALID_BIRTH_DATE = LocalDate.now().minusYears(minAge);
+        VALID_BIRTH_DATE = LocalDate.now(CLOCK).minusYears(minAge);
+    }
+
+    @BeforeEach
+    void everyEmailMightBeRegistered() {
+        Mockito.when(registeredEmails.mightBeRegistered(Mockito.anyString())).thenReturn(true);
+    }
+
+    @BeforeEach
+    void clearCaches() {
+        // the context and its caches are shared by all tests, the mocked repository is not
+        viewCache.invalidateAll();
     }
 
     private User getValidUser() {
         return new User(VALID_EMAIL, VALID_PASSWORD, null, VALID_FIRST_NAME, VALID_LAST_NAME, VALID_BIRTH_DATE);
     }
 
+    private UserView getValidUserView() {
+        return new UserView(1L, 0L, VALID_EMAIL, VALID_FIRST_NAME, VALID_LAST_NAME, VALID_BIRTH_DATE, null, null);
+    }
+
     @Test
     @WithMockUser(roles = "BASIC")
     void whenPostWithRoleBASIC_returnsStatus403() throws Exception {
@@ -139,6 +283,201 @@ class SimpleRestApiApplicationTest {
 
             Mockito.verify(repo, Mockito.times(1)).save(Mockito.any(User.class));
         }
+
+        @Test
+        void whenPostRepeatsIdempotencyKey_returnsTheSameLocationWithoutInsertingAgain() throws Exception {
+            Mockito.doAnswer(invocationOnMock -> {
+                invocationOnMock.getArgument(0, User.class).setId(1L);
+                return null;
+            }).when(repo).save(Mockito.any(User.class));
+            String body = objectMapper.writeValueAsString(getValidUser());
+
+            for (int i = 0; i < 2; i++) {
+                mvc.perform(post("/users")
+                                .header("Idempotency-Key", "retried-create")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(body))
+                        .andExpect(status().isCreated())
+                        .andExpect(header().string("location", "http://localhost/users/1"));
+            }
+
+            Mockito.verify(repo, Mockito.times(1)).save(Mockito.any(User.class));
+        }
+
+        @Test
+        void whenPostReusesIdempotencyKeyForAnotherUser_returnsStatus400() throws Exception {
+            Mockito.doAnswer(invocationOnMock -> {
+                invocationOnMock.getArgument(0, User.class).setId(1L);
+                return null;
+            }).when(repo).save(Mockito.any(User.class));
+            User other = getValidUser();
+            other.setEmail("other@example.com");
+
+            mvc.perform(post("/users")
+                            .header("Idempotency-Key", "reused")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(getValidUser())))
+                    .andExpect(status().isCreated());
+            mvc.perform(post("/users")
+                            .header("Idempotency-Key", "reused")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(other)))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.data").value(containsString("Idempotency-Key")));
+
+            Mockito.verify(repo, Mockito.times(1)).save(Mockito.any(User.class));
+        }
+
+        @Test
+        void whenPostAndEmailIsUnknownToTheFilter_skipsTheEmailQuery() throws Exception {
+            Mockito.when(registeredEmails.mightBeRegistered(VALID_EMAIL)).thenReturn(false);
+            Mockito.doAnswer(invocationOnMock -> {
+                invocationOnMock.getArgument(0, User.class).setId(1L);
+                return null;
+            }).when(repo).save(Mockito.any(User.class));
+
+            mvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(getValidUser())))
+                    .andExpect(status().isCreated());
+
+            Mockito.verify(repo, Mockito.never()).existsByEmail(Mockito.anyString());
+            Mockito.verify(registeredEmails).registered(VALID_EMAIL);
+            Mockito.verify(repo, Mockito.times(1)).save(Mockito.any(User.class));
+        }
+
+        @Test
+        void whenPostAndInsertHitsTheUniqueEmailIndex_returnsStatus400() throws Exception {
+            Mockito.when(registeredEmails.mightBeRegistered(VALID_EMAIL)).thenReturn(false);
+            Mockito.doThrow(new DataIntegrityViolationException("users_email_lower_idx")).when(repo).flush();
+
+            mvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(getValidUser())))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.data").value(containsString("already registered")));
+        }
+
+        @Test
+        void whenBulkPostAndNoEmailIsKnownToTheFilter_skipsTheEmailQuery() throws Exception {
+            Mockito.when(registeredEmails.mightBeRegistered(Mockito.anyString())).thenReturn(false);
+
+            mvc.perform(post("/users/bulk")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content(objectMapper.writeValueAsString(getValidUser())))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.created").value(1));
+
+            Mockito.verify(repo, Mockito.never()).findExistingEmails(Mockito.anyCollection());
+            Mockito.verify(repo, Mockito.times(1)).saveAll(Mockito.anyIterable());
+        }
+
+        @Test
+        void whenBulkPostNdjson_storesValidRowsAndReportsTheRest() throws Exception {
+            User valid = getValidUser();
+            User tooYoung = getValidUser();
+            tooYoung.setEmail("young@example.com");
+            tooYoung.setBirthDate(VALID_BIRTH_DATE.plusDays(1));
+            User registered = getValidUser();
+            registered.setEmail("registered@example.com");
+
+            String body = String.join("\n",
+                    objectMapper.writeValueAsString(valid),
+                    objectMapper.writeValueAsString(tooYoung),
+                    objectMapper.writeValueAsString(registered),
+                    objectMapper.writeValueAsString(valid));
+
+            Mockito.when(repo.findExistingEmails(Mockito.anyCollection()))
+                    .thenReturn(Set.of("registered@example.com"));
+
+            mvc.perform(post("/users/bulk")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content(body))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.created").value(1))
+                    .andExpect(jsonPath("$.data.errors[*].row").value(contains(1, 2, 3)));
+
+            Mockito.verify(repo, Mockito.times(1)).findExistingEmails(Mockito.anyCollection());
+            Mockito.verify(repo, Mockito.times(1)).saveAll(Mockito.anyIterable());
+        }
+
+        @Test
+        void whenBulkPostJsonArrayWithBlankName_reportsFieldError() throws Exception {
+            User user = getValidUser();
+            user.setFirstName(" ");
+
+            mvc.perform(post("/users/bulk")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(user))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.created").value(0))
+                    .andExpect(jsonPath("$.data.errors[0].errors.firstName").exists());
+        }
+    }
+
+    @Test
+    void whenSearchWithoutCredentials_returnsStatus401() throws Exception {
+        mvc.perform(get("/users/search").param("email", "us"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenSearchByRoleWithRoleBASIC_returnsStatus403() throws Exception {
+        mvc.perform(get("/users/search").param("email", "us").param("role", "ADMIN"))
+                .andExpect(status().isForbidden());
+        Mockito.verify(repo, Mockito.never()).search(Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenSearchHasNoIndexedFilter_returnsStatus400() throws Exception {
+        mvc.perform(get("/users/search").param("firstName", "Nick"))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(repo, Mockito.never()).search(Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void whenSearchIsIndexed_returnsMatchesInOneQuery() throws Exception {
+        Mockito.when(repo.search(Mockito.any(), Mockito.any(), Mockito.eq(5))).thenReturn(List.of(getValidUserView()));
+
+        mvc.perform(get("/users/search")
+                        .param("email", "us").param("role", "BASIC").param("sort", "-email").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].email").value(VALID_EMAIL));
+
+        Mockito.verify(repo, Mockito.times(1)).search(Mockito.any(),
+                Mockito.eq(Sort.by(Sort.Direction.DESC, "emailLower")), Mockito.eq(5));
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenTextSearch_returnsRankedUsersFromTheIndex() throws Exception {
+        Mockito.when(textIndex.search("nick fre", 20)).thenReturn(List.of(getValidUserView()));
+
+        mvc.perform(get("/users/search").param("q", "nick fre"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].email").value(VALID_EMAIL));
+
+        Mockito.verify(repo, Mockito.never()).search(Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenTextSearchIsTooLong_returnsStatus400() throws Exception {
+        mvc.perform(get("/users/search").param("q", "nick ".repeat(30)))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(textIndex, Mockito.never()).search(Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenTextIndexRebuildWithRoleBASIC_returnsStatus403() throws Exception {
+        mvc.perform(post("/users/search/rebuild"))
+                .andExpect(status().isForbidden());
+        Mockito.verify(textIndexer, Mockito.never()).rebuild();
     }
 
     @Test
@@ -147,7 +486,7 @@ class SimpleRestApiApplicationTest {
         mvc.perform(delete("/users/1"))
                 .andExpect(status().isOk());
 
-        Mockito.verify(repo).deleteById(1L);
+        Mockito.verify(repo).deleteByIdIn(List.of(1L));
     }
 
     @Test
@@ -156,84 +495,270 @@ class SimpleRestApiApplicationTest {
         mvc.perform(delete("/users/1"))
                 .andExpect(status().isForbidden());
 
-        Mockito.verify(repo, Mockito.never()).deleteById(1L);
+        Mockito.verify(repo, Mockito.never()).deleteByIdIn(List.of(1L));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void whenBulkDeleteWithinSyncLimit_deletesWithOneStatementPerKind() throws Exception {
+        Mockito.when(repo.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+        Mockito.when(repo.deleteByEmailIn(List.of(VALID_EMAIL))).thenReturn(1);
+
+        mvc.perform(delete("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1,2],\"emails\":[\"" + VALID_EMAIL + "\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.deleted").value(3));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void whenBulkDeleteAboveSyncLimit_returnsStatus202WithJobLocation() throws Exception {
+        String ids = LongStream.rangeClosed(1, 1001)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        mvc.perform(delete("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[" + ids + "]}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("location", containsString("/users/delete-jobs/")))
+                .andExpect(jsonPath("$.data.requested").value(1001));
     }
 
     @Test
-    @WithMockUser
     void whenPatchAndSamePrincipalAndUserBirthDateIsInvalid_returnsStatus400() throws Exception {
-        initMockRepositoryWithSamePrincipal();
+        initMockRepositoryWithUser();
 
         User user = getValidUser();
         user.setBirthDate(VALID_BIRTH_DATE.plusDays(1));
         String body = objectMapper.writeValueAsString(user);
 
         mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(body))
                 .andExpect(status().isBadRequest());
     }
 
-    private void initMockRepositoryWithSamePrincipal() {
-        User user = new User();
-        user.setId(1L);
-        Mockito.when(repo.findById(1L)).thenReturn(Optional.of(user));
+    private void initMockRepositoryWithUser() {
+        Mockito.when(repo.updateNonNullFields(Mockito.eq(1L), Mockito.any(User.class), Mockito.any()))
+                .thenReturn(1);
+    }
 
+    private UserDetailsImpl principal(Long id, Role role) {
         User principalUser = new User();
-        principalUser.setId(1L);
-        Mockito.when(repo.findByEmail("user")).thenReturn(Optional.of(principalUser));
+        principalUser.setId(id);
+        principalUser.setEmail("user");
+        principalUser.setRole(role);
+        return new UserDetailsImpl(principalUser);
     }
 
     @Test
-    @WithMockUser
     void whenPatchAndSamePrincipalAndUserIsValid_returnsStatus200() throws Exception {
-        initMockRepositoryWithSamePrincipal();
+        initMockRepositoryWithUser();
 
         User user = getValidUser();
         String body = objectMapper.writeValueAsString(user);
 
         mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(body))
                 .andExpect(status().isOk());
+
+        Mockito.verify(repo, Mockito.never()).findByEmail(Mockito.anyString());
+    }
+
+    @Test
+    void whenPatchSucceeds_publishesTheEmailToEvictThePrincipalByKey() throws Exception {
+        initMockRepositoryWithUser();
+        Mockito.when(repo.findEmailsByIdIn(List.of(1L))).thenReturn(List.of(VALID_EMAIL));
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isOk());
+
+        assertEquals(List.of(new UserChangedEvent(1L, VALID_EMAIL)), events.stream(UserChangedEvent.class).toList());
+    }
+
+    @Test
+    void whenPatchSetsNoField_returnsStatus400WithoutWriting() throws Exception {
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(repo, Mockito.never()).updateNonNullFields(Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
-    @WithMockUser
     void whenPatchAndAnotherPrincipalNotADMIN_returnsStatus403() throws Exception {
-        initMockRepositoryWithAnotherPrincipal();
+        initMockRepositoryWithUser();
 
         User user = getValidUser();
         String body = objectMapper.writeValueAsString(user);
 
         mvc.perform(patch("/users/1")
+                        .with(user(principal(2L, Role.BASIC)))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(body))
                 .andExpect(status().isForbidden());
     }
 
-    private void initMockRepositoryWithAnotherPrincipal() {
-        User user = new User();
-        user.setId(1L);
-        Mockito.when(repo.findById(1L)).thenReturn(Optional.of(user));
-
-        User principalUser = new User();
-        principalUser.setId(2L);
-        Mockito.when(repo.findByEmail("user")).thenReturn(Optional.of(principalUser));
-    }
-
     @Test
-    @WithMockUser(roles = "ADMIN")
     void whenPatchAndAnotherPrincipalADMINAndUserIsValid_returnsStatus200() throws Exception {
-        initMockRepositoryWithAnotherPrincipal();
+        initMockRepositoryWithUser();
 
         User user = getValidUser();
         String body = objectMapper.writeValueAsString(user);
 
         mvc.perform(patch("/users/1")
+                        .with(user(principal(2L, Role.ADMIN)))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(body))
-                .andExpect(status().isForbidden());
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void whenPatchWithMatchingIfMatch_returnsStatus200AndNextETag() throws Exception {
+        Mockito.when(repo.updateNonNullFields(Mockito.eq(1L), Mockito.any(User.class), Mockito.eq(Set.of(3L))))
+                .thenReturn(1);
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("etag", "\"4\""));
+    }
+
+    @Test
+    void whenPatchWithStaleIfMatch_returnsStatus412() throws Exception {
+        Mockito.when(repo.updateNonNullFields(Mockito.eq(1L), Mockito.any(User.class), Mockito.eq(Set.of(3L))))
+                .thenReturn(0);
+        Mockito.when(repo.existsById(1L)).thenReturn(true);
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenPatchWithIfMatchList_appliesToAnyListedVersion() throws Exception {
+        Mockito.when(repo.updateNonNullFields(Mockito.eq(1L), Mockito.any(User.class), Mockito.eq(Set.of(3L, 4L))))
+                .thenReturn(1);
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .header("If-Match", "\"3\", W/\"5\",\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("etag"));
+    }
+
+    @Test
+    void whenPatchWithIfMatchAny_updatesAnyVersion() throws Exception {
+        initMockRepositoryWithUser();
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .header("If-Match", "*")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isOk());
+
+        Mockito.verify(repo).updateNonNullFields(Mockito.eq(1L), Mockito.any(User.class), Mockito.isNull());
+    }
+
+    @Test
+    void whenPatchWithWeakIfMatch_returnsStatus412() throws Exception {
+        Mockito.when(repo.existsById(1L)).thenReturn(true);
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .header("If-Match", "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(repo).updateNonNullFields(Mockito.eq(1L), Mockito.any(User.class), Mockito.eq(Set.of()));
+    }
+
+    @Test
+    void whenPatchWithMalformedIfMatch_returnsStatus400() throws Exception {
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .header("If-Match", "3")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPatchAndUserIsAbsent_returnsStatus404() throws Exception {
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(2L, Role.ADMIN)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Nick\"}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenPostWithHttpBasic_verifiesCredentialsOnEveryRequestAndLoadsPrincipalOnce() throws Exception {
+        User principalUser = principal(1L, Role.ADMIN).getUser();
+        principalUser.setPassword(passwordEncoder.encode(VALID_PASSWORD));
+        Mockito.when(repo.findByEmail("user")).thenReturn(Optional.of(principalUser));
+
+        String body = objectMapper.writeValueAsString(getValidUser());
+        double matches = passwordVerifications("match");
+        double mismatches = passwordVerifications("mismatch");
+
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(post("/users")
+                            .with(httpBasic("user", VALID_PASSWORD))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isCreated());
+        }
+        mvc.perform(post("/users")
+                        .with(httpBasic("user", "wrong"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isUnauthorized());
+
+        Mockito.verify(repo, Mockito.times(1)).findByEmail("user");
+        assertEquals(matches + 1, passwordVerifications("match")); // the second request hit the credential cache
+        assertEquals(mismatches + 1, passwordVerifications("mismatch"));
+    }
+
+    private double passwordVerifications(String result) {
+        return meterRegistry.counter("user.security.password.verifications", "result", result).count();
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void whenPostIsInvalid_countsValidationFailuresByField() throws Exception {
+        User user = getValidUser();
+        user.setFirstName(" ");
+        user.setLastName(" ");
+        double firstNameFailures = meterRegistry.counter("user.validation.failures", "field", "firstName").count();
+
+        mvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(firstNameFailures + 1,
+                meterRegistry.counter("user.validation.failures", "field", "firstName").count());
     }
 
     @Test
@@ -255,8 +780,7 @@ class SimpleRestApiApplicationTest {
         LocalDate from = VALID_BIRTH_DATE.minusDays(1);
         LocalDate to = VALID_BIRTH_DATE.plusDays(1);
 
-        User user = getValidUser();
-        user.setId(1L);
+        UserView user = getValidUserView();
 
         Mockito.when(repo.findByBirthDateBetween(from, to)).thenReturn(List.of(user));
 
@@ -271,4 +795,203 @@ class SimpleRestApiApplicationTest {
 
         Mockito.verify(repo).findByBirthDateBetween(from, to);
     }
+
+    @Test
+    void whenGetAcceptingCbor_returnsTheJsonFieldsInCbor() throws Exception {
+        LocalDate from = VALID_BIRTH_DATE.minusDays(1);
+        LocalDate to = VALID_BIRTH_DATE.plusDays(1);
+
+        UserView user = getValidUserView();
+
+        Mockito.when(repo.findByBirthDateBetween(from, to)).thenReturn(List.of(user));
+
+        byte[] cbor = mvc.perform(get("/users")
+                        .queryParam("from", from.toString())
+                        .queryParam("to", to.toString())
+                        .accept("application/cbor")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(List.of(user))), new CBORMapper().readTree(cbor));
+    }
+
+    @Test
+    void whenGetPageAcceptingSmileAndLimitIsInvalid_returnsErrorInSmile() throws Exception {
+        byte[] smile = mvc.perform(get("/users")
+                        .queryParam("from", VALID_BIRTH_DATE.toString())
+                        .queryParam("to", VALID_BIRTH_DATE.toString())
+                        .queryParam("limit", "0")
+                        .accept("application/x-jackson-smile")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals("Limit should be between 1 and 1000. Provided limit: 0",
+                new SmileMapper().readTree(smile).get("data").asText());
+    }
+
+    @Test
+    void whenGetByIdAndUserExists_returnsStatus200WithoutCredentials() throws Exception {
+        Mockito.when(repo.findViewById(1L)).thenReturn(Optional.of(getValidUserView()));
+
+        mvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("etag", "\"0\""))
+                .andExpect(jsonPath("$.email").value(VALID_EMAIL))
+                .andExpect(jsonPath("$.password").doesNotExist())
+                .andExpect(jsonPath("$.role").doesNotExist());
+    }
+
+    @Test
+    void whenGetByIdRepeatedly_loadsUserOnceUntilItIsPatched() throws Exception {
+        Mockito.when(repo.findViewById(1L)).thenReturn(Optional.of(getValidUserView()));
+        initMockRepositoryWithUser();
+
+        mvc.perform(get("/users/1")).andExpect(status().isOk());
+        mvc.perform(get("/users/1")).andExpect(status().isOk());
+        Mockito.verify(repo, Mockito.times(1)).findViewById(1L);
+
+        mvc.perform(patch("/users/1")
+                        .with(user(principal(1L, Role.BASIC)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\":\"Street\"}"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/users/1")).andExpect(status().isOk());
+        Mockito.verify(repo, Mockito.times(2)).findViewById(1L);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void whenGetByIdAfterDelete_loadsUserAgain() throws Exception {
+        Mockito.when(repo.findViewById(1L)).thenReturn(Optional.of(getValidUserView()));
+
+        mvc.perform(get("/users/1")).andExpect(status().isOk());
+        mvc.perform(delete("/users/1")).andExpect(status().isOk());
+        Mockito.when(repo.findViewById(1L)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/users/1")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenGetByIdWithMatchingIfNoneMatch_returnsStatus304WithoutBody() throws Exception {
+        Mockito.when(repo.findViewById(1L)).thenReturn(Optional.of(getValidUserView()));
+
+        mvc.perform(get("/users/1").header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("etag", "\"0\""))
+                .andExpect(content().string(""));
+
+        mvc.perform(get("/users/1").header("If-None-Match", "\"1\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void whenGetByIdAndUserIsAbsent_returnsStatus404() throws Exception {
+        Mockito.when(repo.findViewById(1L)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/users/1"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenGetWithLimitAndPageIsFull_returnsLinkToNextPage() throws Exception {
+        LocalDate from = VALID_BIRTH_DATE.minusDays(1);
+        LocalDate to = VALID_BIRTH_DATE.plusDays(1);
+
+        UserView user = getValidUserView();
+
+        Mockito.when(repo.findByBirthDateBetweenOrderByBirthDateAscIdAsc(
+                Mockito.eq(from), Mockito.eq(to), Mockito.any())).thenReturn(List.of(user));
+
+        String after = new BirthDateCursor(VALID_BIRTH_DATE, 1L).encode();
+
+        mvc.perform(get("/users")
+                        .queryParam("from", from.toString())
+                        .queryParam("to", to.toString())
+                        .queryParam("limit", "1")
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string("link", containsString("after=" + after)))
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(user))));
+    }
+
+    @Test
+    void whenGetWithMalformedCursor_returnsStatus400() throws Exception {
+        mvc.perform(get("/users")
+                        .queryParam("from", VALID_BIRTH_DATE.toString())
+                        .queryParam("to", VALID_BIRTH_DATE.toString())
+                        .queryParam("limit", "10")
+                        .queryParam("after", "not-a-cursor")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGetWithStream_writesAllChunksAsOneArray() throws Exception {
+        LocalDate from = VALID_BIRTH_DATE.minusDays(1);
+        LocalDate to = VALID_BIRTH_DATE.plusDays(1);
+
+        UserView user = getValidUserView();
+
+        Mockito.when(repo.findByBirthDateBetweenOrderByBirthDateAscIdAsc(
+                Mockito.eq(from), Mockito.eq(to), Mockito.any())).thenReturn(List.of(user));
+
+        MvcResult result = mvc.perform(get("/users")
+                        .queryParam("from", from.toString())
+                        .queryParam("to", to.toString())
+                        .queryParam("stream", "true")
+                )
+                .andExpect(request().asyncStarted())
+                // written before the body is streamed from another thread
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(user))));
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenGetChanges_returnsChangesOnceTheFeedCompletes() throws Exception {
+        UserChangeView change = new UserChangeView(8L, 1L, UserChange.Type.UPDATED, Instant.now(CLOCK));
+        DeferredResult<List<UserChangeView>> changes = new DeferredResult<>();
+        Mockito.when(changeFeed.changesAfter(7L, 100)).thenReturn(changes);
+
+        MvcResult result = mvc.perform(get("/users/changes").queryParam("since", "7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        changes.setResult(List.of(change));
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(change))));
+    }
+
+    @Test
+    @WithMockUser(roles = "BASIC")
+    void whenGetChangesWithNegativeSince_returnsStatus400() throws Exception {
+        mvc.perform(get("/users/changes").queryParam("since", "-1"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(changeFeed);
+    }
+
+    @Test
+    void whenGetChangesAnonymously_returnsStatus401() throws Exception {
+        mvc.perform(get("/users/changes"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void whenDelete_recordsChangeBeforeDeleting() throws Exception {
+        mvc.perform(delete("/users/1")).andExpect(status().isOk());
+
+        InOrder order = Mockito.inOrder(outbox, repo);
+        order.verify(outbox).deleting(List.of(1L));
+        order.verify(repo).deleteByIdIn(List.of(1L));
+    }
 }
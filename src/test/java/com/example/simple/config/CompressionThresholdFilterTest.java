@@ -0,0 +1,65 @@
+package com.example.simple.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletOutputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressionThresholdFilterTest {
+
+    private final CompressionThresholdFilter filter = new CompressionThresholdFilter(10);
+
+    @Test
+    void shortBody_isNotCommittedByFlushes() throws Exception {
+        AtomicBoolean committed = new AtomicBoolean(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(gzipRequest(), response, write(5, committed));
+
+        assertFalse(committed.get());
+        assertEquals(5, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void bodyPastTheThreshold_isFlushed() throws Exception {
+        AtomicBoolean committed = new AtomicBoolean();
+
+        filter.doFilter(gzipRequest(), new MockHttpServletResponse(), write(10, committed));
+
+        assertTrue(committed.get());
+    }
+
+    @Test
+    void withoutGzip_flushesPassUntouched() throws Exception {
+        AtomicBoolean committed = new AtomicBoolean();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), new MockHttpServletResponse(), write(1, committed));
+
+        assertTrue(committed.get());
+    }
+
+    private static MockHttpServletRequest gzipRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        return request;
+    }
+
+    // writes a body of that many bytes and flushes it, as the message converters do
+    private static FilterChain write(int bytes, AtomicBoolean committed) {
+        return (request, response) -> {
+            ServletOutputStream out = response.getOutputStream();
+            out.write(new byte[bytes]);
+            out.flush();
+            response.flushBuffer();
+            committed.set(response.isCommitted());
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.simple.config;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserView;
+import com.example.simple.securiry.Role;
+import com.example.simple.services.UserService;
+import com.example.simple.services.UserViewCache;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two H2 databases stand in for a primary and its replica. Nothing replicates between them,
+ * so where a row is found shows where a statement went.
+ */
+@SpringBootTest
+class ReadReplicaConfigTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:primary-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    @DynamicPropertySource
+    static void dataSources(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> PRIMARY_URL);
+        registry.add("spring.jpa.open-in-view", () -> "false");
+        registry.add("user.datasource.replica.jdbc-url", () -> REPLICA_URL);
+        registry.add("user.datasource.replica.username", () -> "sa");
+    }
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserViewCache viewCache;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replica;
+
+    @Test
+    void readOnlyLookup_isServedByReplica() {
+        insert(new JdbcTemplate(replica), 1_000_000L, "replica-only@example.com");
+
+        assertTrue(userService.findView(1_000_000L).isPresent());
+        assertEquals(1, userService.findByBirthDateBetween(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 1))
+                .stream().filter(view -> view.id() == 1_000_000L).count());
+    }
+
+    @Test
+    void create_writesPrimary() {
+        User created = userService.create(new User("created@example.com", "{noop}password", Role.BASIC,
+                "First", "Last", LocalDate.of(1990, 1, 2)));
+
+        assertEquals(1, count(new JdbcTemplate(primary), "created@example.com"));
+        assertEquals(0, count(new JdbcTemplate(replica), "created@example.com"));
+        assertFalse(userService.findView(created.getId()).isPresent());
+    }
+
+    @Test
+    void cachedView_isLoadedFromPrimary() {
+        insert(new JdbcTemplate(primary), 3_000_000L, "cached@example.com");
+        insert(new JdbcTemplate(replica), 3_000_000L, "cached@example.com");
+        assertEquals(0L, viewCache.get(3_000_000L).orElseThrow().version());
+
+        User changes = new User();
+        changes.setFirstName("Changed");
+        userService.update(3_000_000L, changes, null);
+
+        UserView view = viewCache.get(3_000_000L).orElseThrow();
+        assertEquals(1L, view.version());
+        assertEquals("Changed", view.firstName());
+    }
+
+    @Test
+    void workOutsideTransactions_usesPrimary() {
+        insert(new JdbcTemplate(primary), 2_000_000L, "primary-only@example.com");
+
+        assertEquals(1, count(new JdbcTemplate(dataSource), "primary-only@example.com"));
+    }
+
+    private static void insert(JdbcTemplate jdbc, long id, String email) {
+        jdbc.update("""
+                insert into users (id, email, password, role, enabled, first_name, last_name, birth_date)
+                values (?, ?, '{noop}password', 'BASIC', true, 'First', 'Last', date '1990-01-01')
+                """, id, email);
+    }
+
+    private static int count(JdbcTemplate jdbc, String email) {
+        return jdbc.queryForObject("select count(*) from users where email = ?", Integer.class, email);
+    }
+}
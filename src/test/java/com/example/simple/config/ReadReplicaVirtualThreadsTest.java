@@ -0,0 +1,71 @@
+package com.example.simple.config;
+
+import com.example.simple.services.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The replica setup of {@link ReadReplicaConfigTest} with virtual threads enabled,
+ * where both pools are wrapped by {@link DatabaseConcurrencyConfig}.
+ */
+@SpringBootTest
+class ReadReplicaVirtualThreadsTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:primary-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    @DynamicPropertySource
+    static void dataSources(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> PRIMARY_URL);
+        registry.add("spring.jpa.open-in-view", () -> "false");
+        registry.add("spring.threads.virtual.enabled", () -> "true");
+        registry.add("user.datasource.replica.jdbc-url", () -> REPLICA_URL);
+        registry.add("user.datasource.replica.username", () -> "sa");
+    }
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replica;
+
+    @Test
+    void pools_areConcurrencyLimited() {
+        assertInstanceOf(ConcurrencyLimitingDataSource.class, primary);
+        assertInstanceOf(ConcurrencyLimitingDataSource.class, replica);
+    }
+
+    @Test
+    void readOnlyLookup_isServedByReplica() {
+        new JdbcTemplate(replica).update("""
+                insert into users (id, email, password, role, enabled, first_name, last_name, birth_date)
+                values (1000000, 'replica-only@example.com', '{noop}password', 'BASIC', true, 'First', 'Last', date '1990-01-01')
+                """);
+
+        assertTrue(userService.findView(1_000_000L).isPresent());
+    }
+}
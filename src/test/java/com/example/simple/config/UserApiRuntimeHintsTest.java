@@ -0,0 +1,32 @@
+package com.example.simple.config;
+
+import com.example.simple.model.BulkImportResult;
+import com.example.simple.model.DeleteJob;
+import com.example.simple.model.User;
+import com.example.simple.securiry.Role;
+import com.example.simple.util.SimpleDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserApiRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void whenRegistered_jsonTypesAndTheirAccessorsAreReflective() throws Exception {
+        new UserApiRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(User.class.getMethod("getEmail")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(User.class.getMethod("setBirthDate",
+                LocalDate.class)).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(SimpleDTO.class.getMethod("getData")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Role.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(BulkImportResult.RowError.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(DeleteJob.class.getMethod("getStatus")).test(hints));
+    }
+}
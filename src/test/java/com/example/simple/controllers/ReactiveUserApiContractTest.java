@@ -0,0 +1,50 @@
+package com.example.simple.controllers;
+
+import com.example.simple.model.UserView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+class ReactiveUserApiContractTest extends UserApiContract {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void bindClient() {
+        client = webTestClient;
+    }
+
+    @Test
+    void rangeAsNdjson_streamsOneUserPerLine() {
+        LocalDate first = birthDate();
+        LocalDate second = birthDate();
+        create(email(), first).expectStatus().isCreated();
+        create(email(), second).expectStatus().isCreated();
+
+        List<UserView> users = client.get().uri("/users?from={from}&to={to}", first, second)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(UserView.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(List.of(first, second), users.stream().map(UserView::birthDate).toList());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.simple.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.client.MockMvcWebTestClient;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ServletUserApiContractTest extends UserApiContract {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @BeforeEach
+    void bindClient() {
+        client = MockMvcWebTestClient.bindTo(mvc).build();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.simple.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+/**
+ * Behaviour of the create, lookup and range endpoints that both stacks must share.
+ * Subclasses start one of them against a fresh database and set {@link #client}.
+ * Every user gets its own birth date, so range queries only see the users of their test.
+ */
+abstract class UserApiContract {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    protected WebTestClient client;
+
+    @Test
+    void createdUser_isServedAtItsLocation() {
+        String email = email();
+        URI location = create(email, birthDate())
+                .expectStatus().isCreated()
+                .returnResult(Void.class).getResponseHeaders().getLocation();
+
+        client.get().uri(location)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.email").isEqualTo(email)
+                .jsonPath("$.firstName").isEqualTo("First")
+                .jsonPath("$.password").doesNotExist()
+                .jsonPath("$.version").doesNotExist();
+    }
+
+    @Test
+    void matchingIfNoneMatch_isNotModified() {
+        URI location = create(email(), birthDate())
+                .returnResult(Void.class).getResponseHeaders().getLocation();
+
+        client.get().uri(location)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void unknownUser_isNotFound() {
+        client.get().uri("/users/{id}", Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void createWithoutCredentials_isUnauthorized() {
+        client.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(userJson(email(), birthDate()))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void createByBasicUser_isForbidden() {
+        String email = email();
+        create(email, birthDate()).expectStatus().isCreated();
+
+        client.post().uri("/users")
+                .headers(headers -> headers.setBasicAuth(email, "password"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(userJson(email(), birthDate()))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void emailDifferingOnlyInCase_isAlreadyRegistered() {
+        String email = email();
+        create(email, birthDate()).expectStatus().isCreated();
+
+        create(email.toUpperCase(), birthDate())
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.data").isEqualTo("User with email " + email.toUpperCase() + " is already registered");
+    }
+
+    @Test
+    void invalidUser_reportsEveryField() {
+        client.post().uri("/users")
+                .headers(headers -> headers.setBasicAuth("admin@example.com", "admin"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"not an email\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.data.email").isEqualTo("must be a well-formed email address")
+                .jsonPath("$.data.password").isEqualTo("must not be blank")
+                .jsonPath("$.data.birthDate").isEqualTo("must not be null");
+    }
+
+    @Test
+    void range_returnsUsersBornWithinIt() {
+        LocalDate first = birthDate();
+        LocalDate second = birthDate();
+        create(email(), first).expectStatus().isCreated();
+        create(email(), second).expectStatus().isCreated();
+
+        client.get().uri("/users?from={from}&to={to}", first, second)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$[*].birthDate").value(containsInAnyOrder(first.toString(), second.toString()));
+    }
+
+    @Test
+    void reversedRange_isBadRequest() {
+        client.get().uri("/users?from=2000-01-01&to=1990-01-01")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void missingRangeBound_isBadRequest() {
+        client.get().uri("/users?from=1990-01-01")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.data").value(message -> ((String) message).contains("'to'"));
+    }
+
+    protected WebTestClient.ResponseSpec create(String email, LocalDate birthDate) {
+        return client.post().uri("/users")
+                .headers(headers -> headers.setBasicAuth("admin@example.com", "admin"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(userJson(email, birthDate))
+                .exchange();
+    }
+
+    protected static String email() {
+        return "contract" + SEQUENCE.incrementAndGet() + "@example.com";
+    }
+
+    protected static LocalDate birthDate() {
+        return LocalDate.of(1930, 1, 1).plusDays(SEQUENCE.incrementAndGet());
+    }
+
+    private static String userJson(String email, LocalDate birthDate) {
+        return """
+                {"email":"%s","password":"password","firstName":"First","lastName":"Last","birthDate":"%s"}"""
+                .formatted(email, birthDate);
+    }
+}
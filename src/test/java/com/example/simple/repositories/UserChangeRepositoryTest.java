@@ -0,0 +1,85 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserChange;
+import com.example.simple.model.UserChangeView;
+import com.example.simple.securiry.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+class UserChangeRepositoryTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+    @Autowired
+    private UserChangeRepository repo;
+
+    @Autowired
+    private UserRepository users;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void insertUsers() {
+        ids = users.saveAllAndFlush(IntStream.range(0, 3)
+                        .mapToObj(i -> new User("user" + i + "@example.com", "password", Role.BASIC, "First", "Last",
+                                LocalDate.of(1980, 1, 1)))
+                        .toList())
+                .stream().map(User::getId).toList();
+    }
+
+    @Test
+    void onlyExistingUsersGetARow() {
+        assertEquals(2, repo.insertForIds(List.of(ids.get(0), ids.get(1), -1L), UserChange.Type.UPDATED.name(), NOW));
+        assertEquals(1, repo.insertForEmails(List.of("user2@example.com", "absent@example.com"), UserChange.Type.DELETED.name(), NOW));
+
+        List<UserChange> unpublished = repo.findUnpublished(PageRequest.ofSize(10));
+        assertEquals(List.of(ids.get(0), ids.get(1), ids.get(2)), unpublished.stream().map(UserChange::getUserId).toList());
+        assertEquals(UserChange.Type.DELETED, unpublished.get(2).getType());
+        assertEquals(NOW, unpublished.get(0).getChangedAt());
+    }
+
+    @Test
+    void publishedChangesAreReadInSeqOrder() {
+        repo.insertForIds(ids, UserChange.Type.CREATED.name(), NOW);
+        publish(repo.findUnpublished(PageRequest.ofSize(10)));
+
+        assertEquals(3, repo.findLastSeq());
+        List<UserChangeView> changes = repo.findPublishedAfter(1, PageRequest.ofSize(1));
+        assertEquals(List.of(new UserChangeView(2L, ids.get(1), UserChange.Type.CREATED, NOW)), changes);
+    }
+
+    @Test
+    void pruningKeepsUnpublishedChangesAndTheLastPublishedOne() {
+        Instant old = NOW.minus(30, ChronoUnit.DAYS);
+        repo.insertForIds(ids, UserChange.Type.CREATED.name(), old);
+        publish(repo.findUnpublished(PageRequest.ofSize(10)));
+        repo.insertForIds(ids.subList(0, 1), UserChange.Type.UPDATED.name(), old);
+
+        assertEquals(2, repo.deletePublishedBefore(NOW));
+
+        assertEquals(3, repo.findLastSeq());
+        assertEquals(1, repo.findUnpublished(PageRequest.ofSize(10)).size());
+        assertEquals(List.of(3L), repo.findPublishedAfter(0, PageRequest.ofSize(10)).stream().map(UserChangeView::seq).toList());
+    }
+
+    private void publish(List<UserChange> changes) {
+        long seq = repo.findLastSeq();
+        for (UserChange change : changes) {
+            change.setSeq(++seq);
+        }
+        repo.flush();
+    }
+}
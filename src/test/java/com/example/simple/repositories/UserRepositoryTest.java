@@ -0,0 +1,120 @@
+package com.example.simple.repositories;
+
+import com.example.simple.model.User;
+import com.example.simple.model.UserSearch;
+import com.example.simple.model.UserView;
+import com.example.simple.securiry.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against the schema built by the Flyway migrations, which Hibernate validates on startup.
+ */
+@DataJpaTest
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository repo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void insertUsers() {
+        repo.saveAll(IntStream.range(0, 1000)
+                .mapToObj(i -> new User("user" + i + "@example.com", "password", Role.BASIC, "First", "Last",
+                        LocalDate.of(1950, 1, 1).plusDays(i * 17L)))
+                .toList());
+        repo.flush();
+    }
+
+    @Test
+    void whenListingBirthDateRange_queryUsesBirthDateIdIndex() {
+        String plan = explain("""
+                select id, version, email, first_name, last_name, birth_date, address, phone_number
+                from users
+                where birth_date between date '1970-01-01' and date '1970-12-31'
+                order by birth_date, id
+                """);
+
+        assertTrue(plan.contains("USERS_BIRTH_DATE_ID_IDX"), plan);
+    }
+
+    @Test
+    void whenLookingUpEmail_queryUsesCaseInsensitiveEmailIndex() {
+        String plan = explain("select id from users where email_lower = lower('User1@Example.com')");
+
+        assertTrue(plan.contains("USERS_EMAIL_LOWER_IDX"), plan);
+    }
+
+    @Test
+    void whenEmailDiffersOnlyInCase_isTheSameUser() {
+        assertTrue(repo.existsByEmail("USER1@example.com"));
+        assertEquals("user1@example.com", repo.findByEmail("User1@Example.com").orElseThrow().getEmail());
+
+        assertThrows(DataIntegrityViolationException.class, () -> repo.saveAndFlush(
+                new User("User1@Example.com", "password", Role.BASIC, "First", "Last", LocalDate.EPOCH)));
+    }
+
+    @Test
+    void whenSearchingLastNamePrefix_queryUsesLastNameIndex() {
+        String plan = explain("""
+                select id from users
+                where last_name_lower like 'la%' escape '\\'
+                order by last_name_lower, id
+                """);
+
+        assertTrue(plan.contains("USERS_LAST_NAME_LOWER_ID_IDX"), plan);
+    }
+
+    @Test
+    void whenSearching_appliesEveryGivenFilterSortAndLimit() {
+        repo.save(new User("last_one@example.com", "password", Role.ADMIN, "Ann", "O'Last", LocalDate.of(1990, 1, 1)));
+        repo.save(new User("lastone@example.com", "password", Role.ADMIN, "Bob", "Last", LocalDate.of(1990, 1, 2)));
+        repo.flush();
+
+        List<UserView> found = search(new UserSearch("LAST_", null, null, Role.ADMIN, null, null, null,
+                UserSearch.Order.EMAIL, false, 10));
+        assertEquals(List.of("last_one@example.com"), found.stream().map(UserView::email).toList());
+
+        found = search(new UserSearch(null, "fi", "la", Role.BASIC, true,
+                LocalDate.of(1960, 1, 1), LocalDate.of(1969, 12, 31), UserSearch.Order.BIRTH_DATE, true, 3));
+        assertEquals(List.of(LocalDate.of(1969, 12, 20), LocalDate.of(1969, 12, 3), LocalDate.of(1969, 11, 16)),
+                found.stream().map(UserView::birthDate).toList());
+    }
+
+    @Test
+    void whenUpdatingWithExpectedVersions_appliesOnlyToAListedVersion() {
+        Long id = repo.save(new User("versioned@example.com", "password", Role.BASIC, "Ann", "Lee",
+                LocalDate.of(1990, 1, 1))).getId();
+        repo.flush();
+        User changes = new User();
+        changes.setFirstName("Bob");
+
+        assertEquals(0, repo.updateNonNullFields(id, changes, Set.of(5L, 6L)));
+        assertEquals(0, repo.updateNonNullFields(id, changes, Set.of()));
+        assertEquals(1, repo.updateNonNullFields(id, changes, Set.of(0L, 6L)));
+        assertEquals(1, repo.updateNonNullFields(id, changes, null));
+    }
+
+    private List<UserView> search(UserSearch search) {
+        return repo.search(UserSpecifications.matching(search), search.sort(), search.limit());
+    }
+
+    private String explain(String sql) {
+        return jdbc.queryForObject("explain " + sql, String.class);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.simple.securiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AdmissionFiltersTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final TokenBuckets buckets = new TokenBuckets(100, Duration.ofMinutes(1), System::nanoTime);
+
+    private final RateLimitFilter endpoints = RateLimitFilter.endpoints(List.of(
+            new RateLimitProperties.Rule(HttpMethod.POST, "/users", 0.001, 2),
+            new RateLimitProperties.Rule(null, "/users/**", 1000, 1000)), buckets, meterRegistry);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void exhaustedRule_isAnsweredWithTooManyRequestsAndRetryAfter() throws Exception {
+        authenticate("admin@example.com");
+        assertEquals(200, filter(endpoints, request("POST", "/users")).getStatus());
+        assertEquals(200, filter(endpoints, request("POST", "/users")).getStatus());
+
+        MockHttpServletResponse rejected = filter(endpoints, request("POST", "/users"));
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1000", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.counter("user.ratelimit.rejections", "rule", "POST /users").count());
+        // other endpoints and other users have buckets of their own
+        assertEquals(200, filter(endpoints, request("GET", "/users/1")).getStatus());
+        authenticate("other@example.com");
+        assertEquals(200, filter(endpoints, request("POST", "/users")).getStatus());
+    }
+
+    @Test
+    void anonymousRequests_areLimitedPerAddress() throws Exception {
+        filter(endpoints, request("POST", "/users", "10.0.0.1"));
+        filter(endpoints, request("POST", "/users", "10.0.0.1"));
+
+        assertEquals(429, filter(endpoints, request("POST", "/users", "10.0.0.1")).getStatus());
+        assertEquals(200, filter(endpoints, request("POST", "/users", "10.0.0.2")).getStatus());
+    }
+
+    @Test
+    void authenticationLimit_onlyCountsRequestsWithCredentials() throws Exception {
+        RateLimitFilter authentication = RateLimitFilter.authentication(
+                new RateLimitProperties.Rule(null, null, 0.001, 1), buckets, meterRegistry);
+        MockHttpServletRequest withCredentials = request("GET", "/users/1");
+        withCredentials.addHeader(HttpHeaders.AUTHORIZATION, "Basic Zm9vOmJhcg==");
+        MockHttpServletRequest again = request("GET", "/users/1");
+        again.addHeader(HttpHeaders.AUTHORIZATION, "Basic Zm9vOmJheg==");
+
+        assertEquals(200, filter(authentication, withCredentials).getStatus());
+        assertEquals(429, filter(authentication, again).getStatus());
+        assertEquals(200, filter(authentication, request("GET", "/users/1")).getStatus());
+    }
+
+    @Test
+    void requestsBeyondTheConcurrencyLimit_areShedWithServiceUnavailable() throws Exception {
+        ConcurrencyLimitFilter admission = new ConcurrencyLimitFilter(1, Duration.ZERO, meterRegistry);
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+        // the admitted request is still in flight while the next one arrives
+        FilterChain whileInFlight = (request, response) -> nested[0] = filter(admission, request("GET", "/users/2"));
+
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+        admission.doFilter(request("GET", "/users/1"), admitted, whileInFlight);
+
+        assertEquals(200, admitted.getStatus());
+        assertEquals(503, nested[0].getStatus());
+        assertEquals("1", nested[0].getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.counter("user.admission.rejections").count());
+        assertEquals(0.0, meterRegistry.get("user.admission.inflight").gauge().value());
+        assertNull(filter(admission, request("GET", "/users/3")).getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    private static void authenticate(String name) {
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(name, null, List.of(Role.ADMIN)));
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String address) {
+        MockHttpServletRequest request = request(method, uri);
+        request.setRemoteAddr(address);
+        return request;
+    }
+
+    private static MockHttpServletResponse filter(Filter filter, ServletRequest request)
+            throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.simple.securiry;
+
+import com.example.simple.events.UserChangedEvent;
+import com.example.simple.model.User;
+import com.example.simple.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DatabaseUserDetailsServiceTest {
+
+    private final UserRepository repo = Mockito.mock(UserRepository.class);
+
+    private final DatabaseUserDetailsService service = new DatabaseUserDetailsService(repo, 100, Duration.ofMinutes(5),
+            new SimpleMeterRegistry());
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void stopThreads() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void updateCommittedDuringALoad_doesNotLeaveTheOldPrincipalCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch loadMayFinish = new CountDownLatch(1);
+        Mockito.when(repo.findByEmail("ann@example.com"))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    loadMayFinish.await(5, TimeUnit.SECONDS);
+                    return Optional.of(user("{noop}old"));
+                })
+                .thenReturn(Optional.of(user("{noop}new")));
+
+        Future<UserDetailsImpl> staleLoad = threads.submit(() -> service.loadUserByUsername("Ann@example.com"));
+        loading.await(5, TimeUnit.SECONDS);
+        Future<?> eviction = threads.submit(() -> service.evict(new UserChangedEvent(1L, "ann@example.com")));
+        // the eviction waits for the load in flight, give it the time to get there
+        Thread.sleep(200);
+        loadMayFinish.countDown();
+        staleLoad.get(5, TimeUnit.SECONDS);
+        eviction.get(5, TimeUnit.SECONDS);
+
+        assertEquals("{noop}new", service.loadUserByUsername("ann@example.com").getPassword());
+    }
+
+    private static User user(String password) {
+        User user = new User("ann@example.com", password, Role.BASIC, "Ann", "Lee", LocalDate.of(1990, 1, 1));
+        user.setId(1L);
+        return user;
+    }
+}
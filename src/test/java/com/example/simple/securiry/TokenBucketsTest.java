@@ -0,0 +1,59 @@
+package com.example.simple.securiry;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(-5 * SECOND); // nanoTime may be negative
+
+    private final TokenBuckets buckets = new TokenBuckets(100, Duration.ofMinutes(1), now::get);
+
+    @Test
+    void burstIsAcceptedAtOnce_thenTheNextRequestWaitsOneInterval() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("client", SECOND, 3));
+        }
+
+        assertEquals(SECOND, buckets.tryAcquire("client", SECOND, 3));
+    }
+
+    @Test
+    void tokensComeBackAtTheRate() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("client", SECOND, 3);
+        }
+
+        now.addAndGet(SECOND / 2);
+        assertEquals(SECOND / 2, buckets.tryAcquire("client", SECOND, 3));
+        now.addAndGet(SECOND / 2);
+        assertEquals(0, buckets.tryAcquire("client", SECOND, 3));
+        assertTrue(buckets.tryAcquire("client", SECOND, 3) > 0);
+    }
+
+    @Test
+    void idleTimeDoesNotGrowTheBucketBeyondItsBurst() {
+        now.addAndGet(3600 * SECOND);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("client", SECOND, 3));
+        }
+        assertTrue(buckets.tryAcquire("client", SECOND, 3) > 0);
+    }
+
+    @Test
+    void clientsHaveSeparateBuckets() {
+        assertEquals(0, buckets.tryAcquire("a", SECOND, 1));
+        assertTrue(buckets.tryAcquire("a", SECOND, 1) > 0);
+
+        assertEquals(0, buckets.tryAcquire("b", SECOND, 1));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.simple.services;
+
+import com.example.simple.model.UserChangeView;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the published batches for assertions, and fails the next ones on demand.
+ */
+class RecordingUserChangeSink implements UserChangeSink {
+
+    private final BlockingQueue<List<UserChangeView>> batches = new LinkedBlockingQueue<>();
+
+    private volatile int failures;
+
+    void failNext(int times) {
+        failures = times;
+    }
+
+    List<UserChangeView> nextBatch() throws InterruptedException {
+        return batches.poll(5, TimeUnit.SECONDS);
+    }
+
+    boolean isEmpty() {
+        return batches.isEmpty();
+    }
+
+    @Override
+    public void publish(List<UserChangeView> changes) throws IOException {
+        if (failures > 0) {
+            failures--;
+            throw new IOException("sink unavailable");
+        }
+        batches.add(changes);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.simple.services;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import com.example.simple.model.UserChange;
+import com.example.simple.model.UserChangeView;
+import com.example.simple.repositories.UserChangeRepository;
+import com.example.simple.repositories.UserRepository;
+import com.example.simple.securiry.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The relay runs on its own thread with its own transactions, so the test data is committed for real.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserChangeRelayTest {
+
+    private static final Clock CLOCK = Clock.tick(Clock.systemUTC(), Duration.of(1, ChronoUnit.MICROS));
+
+    @Autowired
+    private UserChangeRepository repo;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final RecordingUserChangeSink sink = new RecordingUserChangeSink();
+
+    private TransactionTemplate transactions;
+
+    private UserOutbox outbox;
+
+    private UserChangeFeed feed;
+
+    private UserChangeRelay relay;
+
+    @BeforeEach
+    void startRelay() {
+        transactions = new TransactionTemplate(transactionManager);
+        outbox = new UserOutbox(repo, CLOCK);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        feed = new UserChangeFeed(repo, transactions, Duration.ofSeconds(5), 10, meterRegistry);
+        relay = new UserChangeRelay(repo, sink, feed, transactions, CLOCK, 2, Duration.ofMillis(50), Duration.ofDays(7),
+                meterRegistry);
+    }
+
+    @AfterEach
+    void stopRelay() {
+        relay.destroy();
+        jdbc.update("delete from user_changes");
+        jdbc.update("delete from users");
+    }
+
+    @Test
+    void committedChangesArePublishedInBatchesWithConsecutiveSeqs() throws InterruptedException {
+        List<Long> ids = createUsers(3);
+
+        assertEquals(List.of(1L, 2L), seqs(sink.nextBatch()));
+        assertEquals(List.of(3L), seqs(sink.nextBatch()));
+
+        transactions.executeWithoutResult(status -> outbox.updated(ids.get(2)));
+        List<UserChangeView> updated = sink.nextBatch();
+        assertEquals(4L, updated.get(0).seq());
+        assertEquals(ids.get(2), updated.get(0).userId());
+        assertEquals(UserChange.Type.UPDATED, updated.get(0).type());
+    }
+
+    @Test
+    void rolledBackChangesAreNeverPublished() throws InterruptedException {
+        transactions.executeWithoutResult(status -> {
+            User user = users.saveAndFlush(user(0));
+            outbox.created(List.of(user.getId()));
+            status.setRollbackOnly();
+        });
+        createUsers(1);
+
+        List<UserChangeView> batch = sink.nextBatch();
+        assertEquals(List.of(1L), seqs(batch));
+        assertTrue(sink.isEmpty());
+    }
+
+    @Test
+    void failedBatchIsRetriedWithTheSameSeqs() throws Exception {
+        sink.failNext(2);
+        createUsers(1);
+
+        assertEquals(List.of(1L), seqs(sink.nextBatch()));
+        awaitPublished(1);
+        assertEquals(1, repo.findLastSeq());
+    }
+
+    @Test
+    void waitingRequestIsCompletedByThePublishedBatch() throws Exception {
+        DeferredResult<List<UserChangeView>> result = feed.changesAfter(0, 10);
+        CompletableFuture<Object> answer = new CompletableFuture<>();
+        result.setResultHandler(answer::complete);
+        assertFalse(result.hasResult());
+
+        createUsers(1);
+
+        assertEquals(List.of(1L), seqs(answer.get(5, TimeUnit.SECONDS)));
+        assertTrue(feed.changesAfter(0, 10).hasResult());
+    }
+
+    @Test
+    void requestBehindTheRetainedChangesIsRefused() throws Exception {
+        createUsers(3);
+        awaitPublished(3);
+        // only the last published change stays
+        transactions.executeWithoutResult(status -> repo.deletePublishedBefore(CLOCK.instant().plusSeconds(1)));
+
+        assertEquals(List.of(3L), seqs(feed.changesAfter(2, 10).getResult()));
+        FieldException ex = assertThrows(FieldException.class, () -> feed.changesAfter(1, 10));
+        assertEquals("since", ex.getField());
+    }
+
+    // the feed is completed once the batch is committed, the sink sees it before
+    private void awaitPublished(long seq) throws Exception {
+        CompletableFuture<Object> answer = new CompletableFuture<>();
+        feed.changesAfter(seq - 1, 10).setResultHandler(answer::complete);
+        answer.get(5, TimeUnit.SECONDS);
+    }
+
+    private List<Long> createUsers(int count) {
+        return transactions.execute(status -> {
+            List<Long> ids = users.saveAllAndFlush(IntStream.range(0, count).mapToObj(UserChangeRelayTest::user).toList())
+                    .stream().map(User::getId).toList();
+            outbox.created(ids);
+            return ids;
+        });
+    }
+
+    private static User user(int i) {
+        return new User("user" + i + "@example.com", "password", Role.BASIC, "First", "Last", LocalDate.of(1980, 1, 1));
+    }
+
+    private static List<Long> seqs(Object changes) {
+        return ((List<?>) changes).stream().map(change -> ((UserChangeView) change).seq()).toList();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.simple.services;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import com.example.simple.securiry.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UserCreationServiceTest {
+
+    private final UserService userService = Mockito.mock(UserService.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @SuppressWarnings("deprecation")
+    private final UserCreationService creations = new UserCreationService(userService, NoOpPasswordEncoder.getInstance(),
+            100, Duration.ofMinutes(1), meterRegistry);
+
+    private final ExecutorService clients = Executors.newFixedThreadPool(2);
+
+    private final CountDownLatch inserting = new CountDownLatch(1);
+
+    private final CountDownLatch insertMayFinish = new CountDownLatch(1);
+
+    @AfterEach
+    void stopClients() {
+        clients.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsForTheSameUser_shareOneInsert() throws Exception {
+        blockFirstInsert(1L);
+
+        Future<Long> first = clients.submit(() -> creations.create(user("a@example.com", "Ann"), "admin", null));
+        inserting.await(5, TimeUnit.SECONDS);
+        Future<Long> retry = clients.submit(() -> creations.create(user("A@example.com", "Ann"), "admin", null));
+        awaitCoalesced();
+        insertMayFinish.countDown();
+
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, retry.get(5, TimeUnit.SECONDS));
+        Mockito.verify(userService, Mockito.times(1)).create(Mockito.any());
+    }
+
+    @Test
+    void concurrentRequestForTheSameEmailWithOtherData_findsItRegistered() throws Exception {
+        blockFirstInsert(1L);
+
+        Future<Long> first = clients.submit(() -> creations.create(user("a@example.com", "Ann"), "admin", null));
+        inserting.await(5, TimeUnit.SECONDS);
+        Future<Long> other = clients.submit(() -> creations.create(user("a@example.com", "Bob"), "admin", null));
+        awaitCoalesced();
+        insertMayFinish.countDown();
+
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS));
+        Exception ex = assertThrows(Exception.class, () -> other.get(5, TimeUnit.SECONDS));
+        assertEquals(FieldException.class, ex.getCause().getClass());
+        Mockito.verify(userService, Mockito.times(1)).create(Mockito.any());
+    }
+
+    @Test
+    void idempotencyKeysAreScopedToTheClient() {
+        Mockito.when(userService.create(Mockito.any())).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            user.setId(user.getFirstName().equals("Ann") ? 1L : 2L);
+            return user;
+        });
+
+        assertEquals(1L, creations.create(user("a@example.com", "Ann"), "admin", "key"));
+        assertEquals(1L, creations.create(user("a@example.com", "Ann"), "admin", "key"));
+        assertEquals(2L, creations.create(user("b@example.com", "Bob"), "partner", "key"));
+        assertThrows(FieldException.class, () -> creations.create(user("b@example.com", "Bob"), "admin", "key"));
+        Mockito.verify(userService, Mockito.times(2)).create(Mockito.any());
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyForOtherData_createOneUser() throws Exception {
+        blockFirstInsert(1L);
+
+        Future<Long> first = clients.submit(() -> creations.create(user("a@example.com", "Ann"), "admin", "key"));
+        inserting.await(5, TimeUnit.SECONDS);
+        Future<Long> other = clients.submit(() -> creations.create(user("b@example.com", "Bob"), "admin", "key"));
+        // nothing to observe while the second request waits for the key, give it the time to get there
+        Thread.sleep(200);
+        insertMayFinish.countDown();
+
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS));
+        Exception ex = assertThrows(Exception.class, () -> other.get(5, TimeUnit.SECONDS));
+        assertEquals("Idempotency-Key", ((FieldException) ex.getCause()).getField());
+        Mockito.verify(userService, Mockito.times(1)).create(Mockito.any());
+    }
+
+    @Test
+    void failedRequest_releasesItsKey() {
+        Mockito.when(userService.create(Mockito.any()))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenAnswer(invocation -> {
+                    User user = invocation.getArgument(0);
+                    user.setId(1L);
+                    return user;
+                });
+
+        assertThrows(IllegalStateException.class, () -> creations.create(user("a@example.com", "Ann"), "admin", "key"));
+        assertEquals(1L, creations.create(user("a@example.com", "Ann"), "admin", "key"));
+    }
+
+    private void blockFirstInsert(Long id) {
+        Mockito.when(userService.create(Mockito.any())).thenAnswer(invocation -> {
+            inserting.countDown();
+            insertMayFinish.await(5, TimeUnit.SECONDS);
+            User user = invocation.getArgument(0);
+            user.setId(id);
+            return user;
+        });
+    }
+
+    private void awaitCoalesced() throws InterruptedException {
+        for (int i = 0; i < 500 && meterRegistry.counter("user.creations.coalesced").count() == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static User user(String email, String firstName) {
+        return new User(email, "password", Role.BASIC, firstName, "Lee", LocalDate.of(1990, 1, 1));
+    }
+}
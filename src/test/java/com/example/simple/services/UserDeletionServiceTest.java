@@ -0,0 +1,76 @@
+package com.example.simple.services;
+
+import com.example.simple.model.BulkDeleteRequest;
+import com.example.simple.model.DeleteJob;
+import com.example.simple.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserDeletionServiceTest {
+
+    private static final Duration RETENTION = Duration.ofMillis(50);
+
+    private final UserRepository repo = Mockito.mock(UserRepository.class);
+
+    private final TransactionTemplate transactions = Mockito.mock(TransactionTemplate.class);
+
+    private final UserDeletionService deletions = new UserDeletionService(repo, Mockito.mock(ApplicationEventPublisher.class),
+            Mockito.mock(RegisteredEmails.class), transactions, Mockito.mock(UserOutbox.class), 1000, 0, 16, RETENTION, 1);
+
+    private final CountDownLatch deleting = new CountDownLatch(1);
+
+    private final CountDownLatch deleteMayFinish = new CountDownLatch(1);
+
+    UserDeletionServiceTest() {
+        Mockito.when(transactions.execute(Mockito.any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        Mockito.when(repo.deleteByIdIn(Mockito.any())).thenAnswer(invocation -> {
+            deleting.countDown();
+            deleteMayFinish.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+    }
+
+    @AfterEach
+    void stopWorker() {
+        deleteMayFinish.countDown();
+        deletions.destroy();
+    }
+
+    @Test
+    void unfinishedJobs_outliveRetentionAndSizeLimit() throws Exception {
+        DeleteJob running = deletions.submit(new BulkDeleteRequest(List.of(1L), null));
+        DeleteJob queued = deletions.submit(new BulkDeleteRequest(List.of(2L), null));
+        DeleteJob alsoQueued = deletions.submit(new BulkDeleteRequest(List.of(3L), null));
+        deleting.await(5, TimeUnit.SECONDS);
+        Thread.sleep(RETENTION.multipliedBy(3).toMillis());
+
+        assertEquals(DeleteJob.Status.RUNNING, deletions.findJob(running.getId()).orElseThrow().getStatus());
+        assertEquals(DeleteJob.Status.QUEUED, deletions.findJob(queued.getId()).orElseThrow().getStatus());
+        assertEquals(DeleteJob.Status.QUEUED, deletions.findJob(alsoQueued.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void finishedJobs_expireAfterRetention() throws Exception {
+        DeleteJob job = deletions.submit(new BulkDeleteRequest(List.of(1L), null));
+        deleteMayFinish.countDown();
+
+        for (int i = 0; i < 500 && deletions.findJob(job.getId()).isPresent(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(DeleteJob.Status.DONE, job.getStatus());
+        assertTrue(deletions.findJob(job.getId()).isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.simple.services;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.UserView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.apache.lucene.store.ByteBuffersDirectory;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserTextIndexTest {
+
+    private static final UserView SMITH = user(1, "john.smith@example.com", "John", "Smith", "12 Baker Street, London", "+44 20 7946 0958");
+    private static final UserView SMYTHE = user(2, "anna@example.com", "Anna", "Smythe", null, null);
+    private static final UserView JONES = user(3, "jones@mail.org", "Smith", "Jones", "5 Main Road, Leeds", "555-0100");
+
+    private final UserTextIndex index = new UserTextIndex(new ByteBuffersDirectory());
+
+    UserTextIndexTest() throws IOException {
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        index.destroy();
+    }
+
+    @Test
+    void namesMatchExactlyByPrefixAndWithTypos_bestMatchFirst() throws IOException {
+        index.replaceAll(Stream.of(SMITH, SMYTHE, JONES));
+
+        assertEquals(List.of(1L, 3L), ids("smith"));
+        assertEquals(List.of(2L), ids("smyt"));
+        assertEquals(List.of(1L, 3L), ids("smiht"));
+        assertEquals(List.of(1L), ids("john SMITH"));
+    }
+
+    @Test
+    void emailPartsAddressAndPhoneDigitsAreSearchable() throws IOException {
+        index.replaceAll(Stream.of(SMITH, SMYTHE, JONES));
+
+        assertEquals(List.of(3L), ids("mail.org"));
+        assertEquals(List.of(1L), ids("baker london"));
+        assertEquals(List.of(1L), ids("7946 0958"));
+        assertEquals(List.of(3L), ids("0100"));
+        assertTrue(ids("  ").isEmpty());
+    }
+
+    @Test
+    void queryWithTooManyWords_isRefused() throws IOException {
+        index.replaceAll(Stream.of(SMITH, SMYTHE, JONES));
+
+        String words = IntStream.range(0, 200).mapToObj(i -> "smith" + i).collect(Collectors.joining(" "));
+        FieldException ex = assertThrows(FieldException.class, () -> index.search(words, 10));
+        assertEquals("q", ex.getField());
+    }
+
+    @Test
+    void batchesReplaceDeleteAndAddDocuments() throws IOException {
+        index.replaceAll(Stream.of(SMITH, SMYTHE, JONES));
+
+        UserView renamed = user(2, "anna@example.com", "Anna", "Brown", null, "555-0199");
+        index.apply(List.of(renamed), List.of(1L), List.of("JONES@mail.org"));
+
+        assertEquals(1, index.size());
+        assertTrue(ids("smith").isEmpty());
+        assertEquals(List.of(renamed), index.search("brown 0199", 10));
+    }
+
+    private List<Long> ids(String text) {
+        return index.search(text, 10).stream().map(UserView::id).toList();
+    }
+
+    private static UserView user(long id, String email, String firstName, String lastName, String address, String phone) {
+        return new UserView(id, 0L, email, firstName, lastName, LocalDate.of(1980, 1, 1), address, phone);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.simple.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int INSERTIONS = 100_000;
+
+    @Test
+    void everyPutValueIsContained_evenWhenPutConcurrently() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+
+        IntStream.range(0, INSERTIONS).parallel().forEach(i -> filter.put("user" + i + "@example.com"));
+
+        IntStream.range(0, INSERTIONS).forEach(i -> assertTrue(filter.mightContain("user" + i + "@example.com")));
+    }
+
+    @Test
+    void falsePositiveRate_staysNearTheTargetAndItsEstimate() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        IntStream.range(0, INSERTIONS).forEach(i -> filter.put("user" + i + "@example.com"));
+
+        long falsePositives = IntStream.range(0, INSERTIONS)
+                .filter(i -> filter.mightContain("other" + i + "@example.com"))
+                .count();
+
+        double rate = (double) falsePositives / INSERTIONS;
+        assertEquals(0.01, rate, 0.005);
+        assertEquals(rate, filter.expectedFpp(), 0.005);
+    }
+
+    @Test
+    void putOfAKnownValue_changesNothing() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        assertFalse(filter.mightContain("user@example.com"));
+        assertTrue(filter.put("user@example.com"));
+        assertFalse(filter.put("user@example.com"));
+        assertEquals(0, filter.bitSize() % Long.SIZE);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.simple.validation;
+
+import com.example.simple.exceptions.FieldException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MinimumAgePolicyTest {
+
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-02-28T23:59:59Z"));
+
+    private final MinimumAgePolicy policy = new MinimumAgePolicy(clock, 18);
+
+    @Test
+    void whenBirthDateIsExactlyMinAgeAgo_passes() {
+        assertDoesNotThrow(() -> policy.check(LocalDate.of(2006, 2, 28)));
+    }
+
+    @Test
+    void whenBirthDateIsOneDayShort_throwsFieldException() {
+        assertThrows(FieldException.class, () -> policy.check(LocalDate.of(2006, 3, 1)));
+    }
+
+    @Test
+    void whenDayChanges_cutoffMovesWithoutAnyBackgroundThread() {
+        assertEquals(LocalDate.of(2006, 2, 28), policy.lastValidBirthDate());
+
+        clock.instant = Instant.parse("2024-02-29T00:00:00Z");
+        assertEquals(LocalDate.of(2006, 2, 28), policy.lastValidBirthDate()); // no Feb 29 in 2006
+
+        clock.instant = Instant.parse("2024-03-01T00:00:00Z");
+        assertEquals(LocalDate.of(2006, 3, 1), policy.lastValidBirthDate());
+    }
+
+    @Test
+    void whenClockGoesBack_cutoffFollowsIt() {
+        clock.instant = Instant.parse("2024-03-01T12:00:00Z");
+        assertEquals(LocalDate.of(2006, 3, 1), policy.lastValidBirthDate());
+
+        clock.instant = Instant.parse("2024-02-27T12:00:00Z");
+        assertEquals(LocalDate.of(2006, 2, 27), policy.lastValidBirthDate());
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
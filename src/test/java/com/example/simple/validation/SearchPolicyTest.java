@@ -0,0 +1,70 @@
+package com.example.simple.validation;
+
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.UserSearch;
+import com.example.simple.model.UserSearch.Order;
+import com.example.simple.securiry.Role;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchPolicyTest {
+
+    private static final LocalDate FROM = LocalDate.of(1980, 1, 1);
+    private static final LocalDate TO = LocalDate.of(1980, 12, 31);
+
+    private final SearchPolicy policy = new SearchPolicy(2, 1000);
+
+    @Test
+    void whenAPrefixDrivesTheSearch_anySortAndResidualFilterPasses() {
+        assertDoesNotThrow(() -> policy.check(search("jo", null, null, null, Order.LAST_NAME, 10)));
+        assertDoesNotThrow(() -> policy.check(new UserSearch(null, "an", "sm", Role.ADMIN, true, FROM, TO,
+                Order.EMAIL, true, 1000)));
+    }
+
+    @Test
+    void whenOnlyABirthDateRangeDrivesTheSearch_itIsSortedByBirthDate() {
+        assertDoesNotThrow(() -> policy.check(search(null, null, FROM, null, Order.BIRTH_DATE, 10)));
+
+        FieldException ex = assertThrows(FieldException.class,
+                () -> policy.check(search(null, null, FROM, TO, Order.LAST_NAME, 10)));
+        assertEquals("sort", ex.getField());
+    }
+
+    @Test
+    void whenNoIndexedFilterIsGiven_throwsFieldException() {
+        FieldException ex = assertThrows(FieldException.class, () -> policy.check(
+                new UserSearch(null, "an", null, Role.BASIC, true, null, null, Order.BIRTH_DATE, false, 10)));
+        assertNull(ex.getField());
+    }
+
+    @Test
+    void whenPrefixIsTooShort_throwsFieldException() {
+        FieldException ex = assertThrows(FieldException.class,
+                () -> policy.check(search(null, "s", null, null, Order.BIRTH_DATE, 10)));
+        assertEquals("lastName", ex.getField());
+    }
+
+    @Test
+    void whenLimitOrRangeIsInvalid_throwsFieldException() {
+        assertEquals("limit", assertThrows(FieldException.class,
+                () -> policy.check(search("jo", null, null, null, Order.EMAIL, 1001))).getField());
+        assertEquals("from", assertThrows(FieldException.class,
+                () -> policy.check(search(null, null, TO, FROM, Order.BIRTH_DATE, 10))).getField());
+    }
+
+    @Test
+    void whenSortIsUnknown_throwsFieldException() {
+        assertEquals(Order.LAST_NAME, Order.parse("-lastName"));
+        assertEquals("sort", assertThrows(FieldException.class, () -> Order.parse("password")).getField());
+    }
+
+    private static UserSearch search(String email, String lastName, LocalDate from, LocalDate to, Order order, int limit) {
+        return new UserSearch(email, null, lastName, null, null, from, to, order, false, limit);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.simple.validation;
+
+import com.example.simple.exceptions.FieldErrorsException;
+import com.example.simple.exceptions.FieldException;
+import com.example.simple.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserValidatorTest {
+
+    private final UserValidator validator = new UserValidator(
+            new MinimumAgePolicy(Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC), 18));
+
+    @Test
+    void whenUserIsValid_reportsNoViolations() {
+        assertTrue(validator.newUserViolations(validUser()).isEmpty());
+        assertDoesNotThrow(() -> validator.validateNew(validUser()));
+    }
+
+    @Test
+    void whenSeveralFieldsAreInvalid_reportsEveryField() {
+        User user = validUser();
+        user.setEmail("user@");
+        user.setFirstName(" ");
+        user.setBirthDate(null);
+
+        FieldErrorsException ex = assertThrows(FieldErrorsException.class, () -> validator.validateNew(user));
+        assertEquals(Map.of(
+                "email", "must be a well-formed email address",
+                "firstName", "must not be blank",
+                "birthDate", "must not be null"), ex.getErrors());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"john.doe@example.com", "o’brien@example.com", "john@localhost", "a-b@ex-am--ple.co-m"})
+    void whenEmailIsWellFormed_acceptsIt(String email) {
+        User user = validUser();
+        user.setEmail(email);
+
+        assertTrue(validator.newUserViolations(user).isEmpty());
+    }
+
+    // rejected by the rules of @Email itself, not only by its regexp
+    @ParameterizedTest
+    @ValueSource(strings = {"john..doe@example.com", ".john@example.com", "john.@example.com", "john@-example.com",
+            "john@example-.com", "john@example.com.", "john@example..com", "john@.example.com", "user@", "@example.com"})
+    void whenEmailIsMalformed_rejectsItAsEmailDid(String email) {
+        User user = validUser();
+        user.setEmail(email);
+
+        assertEquals(Map.of("email", "must be a well-formed email address"), validator.newUserViolations(user));
+    }
+
+    @Test
+    void whenEmailPartsAreTooLong_rejectsThemAsEmailDid() {
+        User user = validUser();
+        user.setEmail("x".repeat(64) + "@example.com");
+        assertTrue(validator.newUserViolations(user).isEmpty());
+        user.setEmail("x".repeat(65) + "@example.com");
+        assertEquals(Set.of("email"), validator.newUserViolations(user).keySet());
+
+        user.setEmail("john@" + "a".repeat(63) + ".com");
+        assertTrue(validator.newUserViolations(user).isEmpty());
+        user.setEmail("john@" + "a".repeat(64) + ".com");
+        assertEquals(Set.of("email"), validator.newUserViolations(user).keySet());
+
+        String domain = (("a".repeat(60) + ".").repeat(4) + "abcdefghijk");
+        user.setEmail("john@" + domain);
+        assertTrue(validator.newUserViolations(user).isEmpty());
+        user.setEmail("john@" + domain + "l");
+        assertEquals(Set.of("email"), validator.newUserViolations(user).keySet());
+    }
+
+    @Test
+    void whenUserIsTooYoung_reportsAgeUnderRow() {
+        User user = validUser();
+        user.setBirthDate(LocalDate.of(2010, 1, 1));
+
+        assertThrows(FieldException.class, () -> validator.validateNew(user));
+        assertEquals(Map.of("row", "Only users who are more than 18 years are allowed to use resource. " +
+                "Provided birth date: 2010-01-01"), validator.newUserViolations(user));
+    }
+
+    @Test
+    void whenPatchHasOnlySomeFields_checksOnlyThoseFields() {
+        User changes = new User();
+        changes.setLastName("Doe");
+        assertDoesNotThrow(() -> validator.validatePatch(changes));
+
+        changes.setPassword("");
+        FieldException ex = assertThrows(FieldException.class, () -> validator.validatePatch(changes));
+        assertEquals("Password should not be blank", ex.getMessage());
+    }
+
+    @Test
+    void whenPatchHasNoUpdatableField_rejectsIt() {
+        User changes = new User();
+        changes.setEmail("other@example.com");
+
+        assertThrows(FieldException.class, () -> validator.validatePatch(changes));
+    }
+
+    private static User validUser() {
+        User user = new User();
+        user.setEmail("john.doe@example.com");
+        user.setPassword("secret");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setBirthDate(LocalDate.of(1990, 5, 17));
+        return user;
+    }
+}